@@ -1,11 +1,27 @@
+import archive.ArchiveService;
+import bench.WriteBenchmark;
 import checkout.CheckoutService;
 import commit.CommitService;
+import config.ConfigService;
+import daemon.DaemonClient;
+import daemon.DaemonServer;
+import diff.DiffService;
+import fsck.FsckService;
+import gc.GcService;
 import init.InitService;
 import log.LogService;
+import restore.RestoreService;
+import sparse.SparseService;
 import status.StatusService;
+import sync.SyncService;
+import tune.TuneService;
+import util.OutputSink;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
 
 public class CommandParser {
 
@@ -14,6 +30,17 @@ public class CommandParser {
     private final CheckoutService checkoutService;
     private final StatusService statusService;
     private final LogService logService;
+    private final GcService gcService;
+    private final DiffService diffService;
+    private final SparseService sparseService;
+    private final ConfigService configService;
+    private final ArchiveService archiveService;
+    private final SyncService syncService;
+    private final FsckService fsckService;
+    private final TuneService tuneService;
+    private final RestoreService restoreService;
+
+    private int exitStatus = 0; // 0 이 아니면 프로세스 종료 코드로 (데몬에서는 클라이언트로 넘김)
 
     public CommandParser() {
         this.initService = new InitService();
@@ -21,32 +48,101 @@ public class CommandParser {
         this.checkoutService = new CheckoutService();
         this.statusService = new StatusService();
         this.logService = new LogService();
+        this.gcService = new GcService();
+        this.diffService = new DiffService();
+        this.sparseService = new SparseService(checkoutService);
+        this.configService = new ConfigService();
+        this.archiveService = new ArchiveService();
+        this.syncService = new SyncService(checkoutService);
+        this.tuneService = new TuneService(checkoutService);
+        this.fsckService = new FsckService();
+        this.restoreService = new RestoreService();
     }
 
-    public void parseCommand(String[] args) throws IOException {
+    // 종료 코드를 반환한다. 0 : 성공
+    @SuppressWarnings("try")
+    public int parseCommand(String[] args) throws IOException {
+        exitStatus = 0;
         if (args.length == 0) {
             printUsage();
-            return;
+            return exitStatus;
+        }
+
+        // 출력 모드 옵션 (명령 이름 바로 뒤) : --quiet, --summary, --progress
+        OutputSink.Mode outputMode = OutputSink.Mode.VERBOSE;
+        int optionEnd = 1;
+        while (optionEnd < args.length && parseOutputMode(args[optionEnd]) != null) {
+            outputMode = parseOutputMode(args[optionEnd]);
+            optionEnd++;
+        }
+        if (optionEnd > 1) {
+            String[] remaining = new String[args.length - optionEnd + 1];
+            remaining[0] = args[0];
+            System.arraycopy(args, optionEnd, remaining, 1, args.length - optionEnd);
+            args = remaining;
+        }
+
+        // 데몬은 요청마다 parseCommand 를 다시 부르므로 바깥에서 sink 를 열지 않는다
+        if (args[0].equals("daemon")) {
+            handleDaemon(args);
+            return exitStatus;
         }
 
-        switch (args[0]) {
-            case "init" -> handleInit();
-            case "commit" -> handleCommit(args);
-            case "checkout" -> handleCheckout(args);
-            case "status" -> handleStatus();
-            case "log" -> handleLog();
-            default -> printUsage();
+        try (OutputSink ignored = OutputSink.open(outputMode)) {
+            switch (args[0]) {
+                case "init" -> handleInit();
+                case "commit" -> handleCommit(args);
+                case "checkout" -> handleCheckout(args);
+                case "status" -> handleStatus(args);
+                case "log" -> handleLog(args);
+                case "diff" -> handleDiff(args);
+                case "archive" -> handleArchive(args);
+                case "restore" -> handleRestore(args);
+                case "push" -> handlePush(args);
+                case "pull" -> handlePull(args);
+                case "sparse" -> handleSparse(args);
+                case "gc" -> handleGc(args);
+                case "fsck" -> handleFsck(args);
+                case "tune" -> handleTune(args);
+                case "config" -> handleConfig(args);
+                case "bench" -> handleBench(args);
+                default -> printUsage();
+            }
         }
+        return exitStatus;
+    }
+
+    private static OutputSink.Mode parseOutputMode(String option) {
+        return switch (option) {
+            case "--quiet", "-q" -> OutputSink.Mode.QUIET;
+            case "--summary" -> OutputSink.Mode.SUMMARY;
+            case "--progress" -> OutputSink.Mode.PROGRESS;
+            default -> null;
+        };
     }
 
     public void printUsage() {
         System.out.println("Usage: sfv <command> [options]");
         System.out.println("Available commands:");
         System.out.println("  init                      Initialize a new repository");
-        System.out.println("  commit -m <message>      commit.Commit changes");
-        System.out.println("  log                       View commit history");
-        System.out.println("  status                    Check current status");
+        System.out.println("  commit [--stream] -m <message> [path...]  commit.Commit changes");
+        System.out.println("  log [-- <path>]           View commit history (only commits that changed <path>)");
+        System.out.println("  status [--verify] [path...]  Check current status (--verify hashes touched files to drop unchanged ones)");
         System.out.println("  checkout <commit-id>     Checkout a specific commit");
+        System.out.println("  diff [commit-id] [commit-id]  Show changes between commits or the working tree");
+        System.out.println("  archive <commit-id> -o <file.tar|file.zip>  Export a commit without checking it out");
+        System.out.println("  restore <commit-id> <path-or-glob...>  Restore files from a commit without moving HEAD (quote globs)");
+        System.out.println("  push <path>               Copy missing commits and objects to another repository");
+        System.out.println("  pull <path>               Fetch from another repository and check out its HEAD");
+        System.out.println("  sparse set <pattern...>   Only check out paths matching the patterns");
+        System.out.println("  sparse list|disable       Show or remove sparse checkout patterns");
+        System.out.println("  gc [--grace <minutes>]    Remove unreachable objects");
+        System.out.println("  fsck [--jobs <n>]         Verify commits and re-hash every object");
+        System.out.println("  tune [--files <n>] [--dry-run]  Measure strategies and thread counts on a scratch copy and save the fastest");
+        System.out.println("  config [key [value]]      Show or change repository settings (--unset <key>)");
+        System.out.println("  bench write [files] [kb]  Compare object write throughput with and without durability");
+        System.out.println("  daemon start|stop         Run a background daemon for this repository");
+        System.out.println("Output options (right after the command): --quiet | --summary | --progress");
     }
 
     public void handleInit() throws IOException {
@@ -57,13 +153,20 @@ public class CommandParser {
     public void handleCommit(String[] args) {
         try {
             long start = System.currentTimeMillis();
-            // commit -m "msg" 형식이 잘 맞춰졌는지 확인
-            if (args.length < 3 || !args[1].equals("-m")) {
-                System.out.println("usage: sfv commit -m \"commit message\"");
+            // commit [--stream] -m "msg" 형식이 잘 맞춰졌는지 확인
+            int index = 1;
+            boolean streaming = false;
+            if (args.length > index && args[index].equals("--stream")) {
+                streaming = true;
+                index++;
+            }
+            if (args.length < index + 2 || !args[index].equals("-m")) {
+                System.out.println("usage: sfv commit [--stream] -m \"commit message\" [path...]");
                 return;
             }
-            String message = args[2];
-            commitService.commit(message);
+            String message = args[index + 1];
+            List<String> scopePaths = Arrays.asList(args).subList(index + 2, args.length);
+            commitService.commit(message, scopePaths, streaming);
             long end = System.currentTimeMillis();
             System.out.println("commit time : " + (end - start));
         } catch (IOException | NoSuchAlgorithmException e) {
@@ -89,10 +192,18 @@ public class CommandParser {
         }
     }
 
-    public void handleStatus() {
+    public void handleStatus(String[] args) {
         try {
             long start = System.currentTimeMillis();
-            statusService.getStatus();
+            // status [--verify] [path...]
+            int index = 1;
+            boolean verify = false;
+            if (args.length > index && args[index].equals("--verify")) {
+                verify = true;
+                index++;
+            }
+            List<String> scopePaths = Arrays.asList(args).subList(index, args.length);
+            statusService.getStatus(scopePaths, verify);
             long end = System.currentTimeMillis();
             System.out.println("status time : " + (end - start));
         } catch (IOException | NoSuchAlgorithmException e) {
@@ -100,12 +211,240 @@ public class CommandParser {
         }
     }
 
-    public void handleLog() {
+    public void handleLog(String[] args) {
+        try {
+            if (args.length == 1) {
+                logService.getLog();
+                return;
+            }
+            // log -- <path> (또는 log <path>)
+            int pathIndex = args[1].equals("--") ? 2 : 1;
+            if (args.length != pathIndex + 1) {
+                System.out.println("usage: sfv log [-- <path>]");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            logService.getLog(args[pathIndex]);
+            long end = System.currentTimeMillis();
+            System.out.println("log time : " + (end - start));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public void handleDiff(String[] args) {
+        try {
+            if (args.length > 3) {
+                System.out.println("usage: sfv diff [commit-id] [commit-id]");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            String oldCommitId = args.length >= 2 ? args[1] : null;
+            String newCommitId = args.length >= 3 ? args[2] : null;
+            diffService.diff(oldCommitId, newCommitId);
+            long end = System.currentTimeMillis();
+            System.out.println("diff time : " + (end - start));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public void handleRestore(String[] args) {
+        try {
+            if (args.length < 3) {
+                System.out.println("usage: sfv restore <commit-id> <path-or-glob...>");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            restoreService.restore(args[1], Arrays.asList(args).subList(2, args.length));
+            long end = System.currentTimeMillis();
+            System.out.println("restore time : " + (end - start));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public void handleArchive(String[] args) {
+        try {
+            if (args.length != 4 || !args[2].equals("-o")) {
+                System.out.println("usage: sfv archive <commit-id> -o <file.tar|file.zip>");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            archiveService.archive(args[1], Path.of(args[3]));
+            long end = System.currentTimeMillis();
+            System.out.println("archive time : " + (end - start));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public void handlePush(String[] args) {
+        try {
+            if (args.length != 2) {
+                System.out.println("usage: sfv push <path>");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            syncService.push(Path.of(args[1]));
+            long end = System.currentTimeMillis();
+            System.out.println("push time : " + (end - start));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public void handlePull(String[] args) {
         try {
-            logService.getLog();
+            if (args.length != 2) {
+                System.out.println("usage: sfv pull <path>");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            syncService.pull(Path.of(args[1]));
+            long end = System.currentTimeMillis();
+            System.out.println("pull time : " + (end - start));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void handleSparse(String[] args) {
+        try {
+            if (args.length >= 3 && args[1].equals("set")) {
+                List<String> patterns = Arrays.asList(args).subList(2, args.length);
+                sparseService.set(patterns);
+            } else if (args.length == 2 && args[1].equals("disable")) {
+                sparseService.set(List.of());
+            } else if (args.length == 2 && args[1].equals("list")) {
+                sparseService.list();
+            } else {
+                System.out.println("usage: sfv sparse set <pattern...> | list | disable");
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public void handleGc(String[] args) {
+        try {
+            long graceMinutes = 60;
+            if (args.length >= 3 && args[1].equals("--grace")) {
+                graceMinutes = Long.parseLong(args[2]);
+            } else if (args.length != 1) {
+                System.out.println("usage: sfv gc [--grace <minutes>]");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            gcService.gc(graceMinutes * 60_000L);
+            long end = System.currentTimeMillis();
+            System.out.println("gc time : " + (end - start));
+        } catch (IOException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public void handleFsck(String[] args) {
+        try {
+            int jobs = Runtime.getRuntime().availableProcessors();
+            if (args.length == 3 && args[1].equals("--jobs")) {
+                jobs = Integer.parseInt(args[2]);
+            } else if (args.length != 1) {
+                System.out.println("usage: sfv fsck [--jobs <n>]");
+                return;
+            }
+            if (jobs < 1) {
+                System.out.println("usage: sfv fsck [--jobs <n>]");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            boolean clean = fsckService.fsck(jobs);
+            long end = System.currentTimeMillis();
+            System.out.println("fsck time : " + (end - start));
+            if (!clean) {
+                exitStatus = 1;
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+            exitStatus = 1;
+        }
+    }
+
+    public void handleTune(String[] args) {
+        try {
+            int sampleFiles = TuneService.DEFAULT_SAMPLE_FILES;
+            boolean save = true;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--files") && i + 1 < args.length) {
+                    sampleFiles = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--dry-run")) {
+                    save = false;
+                } else {
+                    System.out.println("usage: sfv tune [--files <n>] [--dry-run]");
+                    return;
+                }
+            }
+            if (sampleFiles < 1) {
+                System.out.println("usage: sfv tune [--files <n>] [--dry-run]");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            tuneService.tune(sampleFiles, save);
+            long end = System.currentTimeMillis();
+            System.out.println("tune time : " + (end - start));
+        } catch (IOException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public void handleConfig(String[] args) {
+        try {
+            if (args.length == 1) {
+                configService.list();
+            } else if (args.length == 3 && args[1].equals("--unset")) {
+                configService.set(args[2], null);
+            } else if (args.length == 2) {
+                configService.get(args[1]);
+            } else if (args.length == 3) {
+                configService.set(args[1], args[2]);
+            } else {
+                System.out.println("usage: sfv config [key [value]] | --unset <key>");
+            }
         } catch (IOException e) {
             System.err.println(e.getMessage());
         }
     }
 
+    public void handleBench(String[] args) {
+        try {
+            if (args.length < 2 || !args[1].equals("write")) {
+                System.out.println("usage: sfv bench write [files] [kb]");
+                return;
+            }
+            int fileCount = args.length >= 3 ? Integer.parseInt(args[2]) : 5000;
+            int fileSizeKb = args.length >= 4 ? Integer.parseInt(args[3]) : 8;
+            new WriteBenchmark().run(fileCount, fileSizeKb);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public void handleDaemon(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: sfv daemon start|stop");
+            return;
+        }
+        switch (args[1]) {
+            case "start" -> new DaemonServer(this::parseCommand).start();
+            case "stop" -> {
+                if (!DaemonClient.stop()) {
+                    System.out.println("[daemon] not running.");
+                }
+            }
+            default -> System.out.println("usage: sfv daemon start|stop");
+        }
+    }
+
 }
@@ -1,3 +1,5 @@
+import daemon.DaemonClient;
+
 import java.io.IOException;
 
 public class Main {
@@ -7,7 +9,14 @@ public class Main {
             return;
         }
 
-        CommandParser commandParser = new CommandParser();
-        commandParser.parseCommand(args);
+        // 데몬이 떠 있으면 데몬에게 넘긴다
+        int exitStatus = DaemonClient.forward(args);
+        if (exitStatus == DaemonClient.NOT_FORWARDED) {
+            CommandParser commandParser = new CommandParser();
+            exitStatus = commandParser.parseCommand(args);
+        }
+        if (exitStatus != 0) {
+            System.exit(exitStatus);
+        }
     }
 }
\ No newline at end of file
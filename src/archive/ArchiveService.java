@@ -0,0 +1,129 @@
+package archive;
+
+import commit.CommitService;
+import commit.CommitSnapshot;
+import util.FileUtil;
+import util.RepositoryLock;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.*;
+
+public class ArchiveService {
+
+    /**
+     * 커밋의 파일들을 작업 디렉토리를 거치지 않고 오브젝트 저장소에서 바로 tar / zip 으로 묶는다.
+     * HEAD, 작업 디렉토리는 건드리지 않으므로 변경사항이 있어도 된다.
+     * 결과 파일은 임시파일에 다 쓴 다음 rename 한다. (중간에 실패해도 반쯤 쓴 파일이 남지 않음)
+     */
+
+    // 이보다 큰 파일은 메모리로 미리 압축하지 않고 쓰는 스레드에서 흘려보내면서 압축
+    private static final long STREAMING_THRESHOLD = 8L * 1024 * 1024;
+
+    @SuppressWarnings("try")
+    public void archive(String partialCommitId, Path output) throws IOException {
+        FileUtil.validateSfvRepository();
+        try (RepositoryLock ignored = RepositoryLock.shared()) {
+
+            // 1. 커밋 찾기
+            String commitId = FileUtil.findMatchingCommitId(partialCommitId);
+            CommitSnapshot snapshot = CommitService.loadCommitFromCommitDirectory(commitId).getSnapshot();
+
+            // 2. 확장자로 형식 결정
+            String fileName = output.getFileName().toString().toLowerCase();
+            FileUtil.ContentWriter writer;
+            if (fileName.endsWith(".tar")) {
+                writer = out -> writeTar(snapshot, out);
+            } else if (fileName.endsWith(".zip")) {
+                writer = out -> writeZip(snapshot, out);
+            } else {
+                throw new FileSystemException("Unsupported archive format (use .tar or .zip): " + output);
+            }
+
+            // 3. 쓰기
+            FileUtil.writeAtomically(output, false, writer);
+            System.out.println("[archive] " + commitId.substring(0, 7) + " : " + snapshot.size() + " files -> "
+                    + output + " (" + Files.size(output) + " bytes)");
+        }
+    }
+
+    private static void writeTar(CommitSnapshot snapshot, OutputStream out) throws IOException {
+        TarArchiveWriter tar = new TarArchiveWriter(out);
+        Iterator<String> paths = snapshot.pathIterator();
+        for (int i = 0; paths.hasNext(); i++) {
+            tar.writeEntry(paths.next(), snapshot.getModifiedTime(i), snapshot.getSize(i), objectPath(snapshot, i));
+        }
+        tar.finish();
+    }
+
+    /**
+     * 작은 파일은 여러 스레드에서 미리 압축하고, 쓰기는 커밋 순서대로 한 스레드에서 한다.
+     * 미리 압축해서 들고 있는 엔트리는 window 개까지만. (메모리 제한, 가장 앞 엔트리가 끝나야 다음을 쓸 수 있음)
+     */
+    private static void writeZip(CommitSnapshot snapshot, OutputStream out) throws IOException {
+        ZipArchiveWriter zip = new ZipArchiveWriter(out);
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        int window = threadCount * 2;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Deque<PendingEntry> pending = new ArrayDeque<>();
+        try {
+            Iterator<String> paths = snapshot.pathIterator();
+            for (int i = 0; paths.hasNext(); i++) {
+                String path = paths.next();
+                long modifiedTime = snapshot.getModifiedTime(i);
+                Path source = objectPath(snapshot, i);
+                if (snapshot.getSize(i) > STREAMING_THRESHOLD) {
+                    pending.add(new PendingEntry(path, modifiedTime, snapshot.getSize(i), source, null));
+                } else {
+                    pending.add(new PendingEntry(path, modifiedTime, snapshot.getSize(i), source,
+                            executor.submit(() -> ZipArchiveWriter.prepare(path, modifiedTime, source))));
+                }
+                if (pending.size() >= window) {
+                    writePending(zip, pending.poll());
+                }
+            }
+            while (!pending.isEmpty()) {
+                writePending(zip, pending.poll());
+            }
+            zip.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void writePending(ZipArchiveWriter zip, PendingEntry entry) throws IOException {
+        if (entry.prepared() == null) {
+            zip.writeStreaming(entry.path(), entry.modifiedTime(), entry.size(), entry.source());
+            return;
+        }
+        try {
+            zip.write(entry.prepared().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("archive interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Error compressing " + entry.path(), e.getCause());
+        }
+    }
+
+    private static Path objectPath(CommitSnapshot snapshot, int index) throws IOException {
+        Path objectPath = FileUtil.getObjectPath(snapshot.getHash(index));
+        if (!Files.exists(objectPath)) {
+            throw new IOException("Object not found for " + snapshot.getPath(index) + " : " + snapshot.getHash(index));
+        }
+        return objectPath;
+    }
+
+    private record PendingEntry(String path, long modifiedTime, long size, Path source,
+                                Future<ZipArchiveWriter.PreparedEntry> prepared) {
+    }
+}
@@ -0,0 +1,148 @@
+package archive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class TarArchiveWriter {
+
+    /**
+     * POSIX ustar 형식으로 파일을 순서대로 써 나간다.
+     * 엔트리 = 512 바이트 헤더 + 내용 (512 바이트 단위로 0 채움), 끝에 빈 블록 2개.
+     * ustar 헤더에 안 들어가는 긴 경로 (name 100 / prefix 155 바이트 초과) 나 8GB 이상 파일은
+     * 바로 앞에 PAX 확장 헤더 ('x') 를 붙여서 path=, size= 로 알려준다.
+     */
+
+    private static final int BLOCK = 512;
+    private static final long MAX_OCTAL_SIZE = 077777777777L; // size 필드 11자리 8진수
+    private static final byte[] ZERO_BLOCK = new byte[BLOCK];
+
+    private final OutputStream out;
+
+    public TarArchiveWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void writeEntry(String name, long modifiedTimeMillis, long size, Path source) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int split = ustarSplit(nameBytes);
+        boolean needsPax = split < 0 || size > MAX_OCTAL_SIZE;
+
+        // 1. 필요하면 PAX 확장 헤더
+        if (needsPax) {
+            StringBuilder records = new StringBuilder();
+            if (split < 0) {
+                records.append(paxRecord("path", name));
+            }
+            if (size > MAX_OCTAL_SIZE) {
+                records.append(paxRecord("size", Long.toString(size)));
+            }
+            byte[] paxData = records.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(header("PaxHeaders/" + shortName(nameBytes), paxData.length, modifiedTimeMillis, (byte) 'x'));
+            out.write(paxData);
+            pad(paxData.length);
+        }
+
+        // 2. ustar 헤더 (PAX 로 보낸 값은 잘린 값/0 으로 채움)
+        out.write(header(split < 0 ? shortName(nameBytes) : name, size > MAX_OCTAL_SIZE ? 0 : size,
+                modifiedTimeMillis, (byte) '0'));
+
+        // 3. 내용
+        long copied = Files.copy(source, out);
+        if (copied != size) {
+            throw new IOException("object size mismatch for " + name + " : expected " + size + ", read " + copied);
+        }
+        pad(size);
+    }
+
+    public void finish() throws IOException {
+        out.write(ZERO_BLOCK);
+        out.write(ZERO_BLOCK);
+        out.flush();
+    }
+
+    private byte[] header(String name, long size, long modifiedTimeMillis, byte type) {
+        byte[] header = new byte[BLOCK];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int split = ustarSplit(nameBytes);
+        if (split > 0) {
+            System.arraycopy(nameBytes, 0, header, 345, split);                                  // prefix
+            System.arraycopy(nameBytes, split + 1, header, 0, nameBytes.length - split - 1);     // name
+        } else {
+            System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+        }
+        octal(header, 100, 8, 0644);                          // mode
+        octal(header, 108, 8, 0);                             // uid
+        octal(header, 116, 8, 0);                             // gid
+        octal(header, 124, 12, size);                         // size
+        octal(header, 136, 12, Math.max(0, modifiedTimeMillis / 1000)); // mtime
+        header[156] = type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+
+        // 체크섬 : 체크섬 필드를 공백으로 두고 모든 바이트의 합
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, 148, 7, checksum);
+        header[155] = ' ';
+        return header;
+    }
+
+    /**
+     * ustar 로 표현 가능한지. name 에 다 들어가면 0, prefix/name 으로 나눠야 하면 나누는 '/' 의 위치, 불가능하면 -1
+     */
+    private static int ustarSplit(byte[] nameBytes) {
+        if (nameBytes.length <= 100) {
+            return 0;
+        }
+        for (int i = Math.min(nameBytes.length - 1, 155); i > 0; i--) {
+            if (nameBytes[i] == '/' && nameBytes.length - i - 1 <= 100) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // PAX 헤더 엔트리와 긴 이름의 ustar 헤더에 넣을 잘린 이름 (UTF-8 문자 중간에서 자르지 않음)
+    private static String shortName(byte[] nameBytes) {
+        int length = Math.min(nameBytes.length, 80);
+        while (length > 0 && length < nameBytes.length && (nameBytes[length] & 0xc0) == 0x80) {
+            length--;
+        }
+        return new String(nameBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // "길이 key=value\n" (길이는 자기 자신의 자릿수까지 포함한 바이트 수)
+    private static String paxRecord(String key, String value) {
+        int body = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = body + Integer.toString(body).length();
+        if (Integer.toString(length).length() != Integer.toString(body).length()) {
+            length++;
+        }
+        return length + " " + key + "=" + value + "\n";
+    }
+
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int width = length - 1; // 마지막은 NUL
+        for (int i = 0; i < width; i++) {
+            int digitIndex = digits.length() - width + i;
+            header[offset + i] = (byte) (digitIndex < 0 ? '0' : digits.charAt(digitIndex));
+        }
+        header[offset + width] = 0;
+    }
+
+    private void pad(long size) throws IOException {
+        int remainder = (int) (size % BLOCK);
+        if (remainder != 0) {
+            out.write(ZERO_BLOCK, 0, BLOCK - remainder);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package archive;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+public class ZipArchiveWriter {
+
+    /**
+     * zip 파일을 순서대로 써 나간다. (java.util.zip.ZipOutputStream 은 압축을 호출한 스레드에서만 하므로 직접 씀)
+     * - prepare() : 작은 파일은 아무 스레드에서나 미리 메모리로 압축해둔다 (CRC, 크기를 알기 때문에 로컬 헤더에 바로 씀)
+     *               압축해도 작아지지 않으면 STORED 로 저장
+     * - writeStreaming() : 큰 파일은 쓰는 스레드에서 흘려보내면서 압축하고, 크기/CRC 는 뒤의 data descriptor 에 씀
+     * 엔트리 수가 65535 를 넘거나 크기/오프셋이 4GB 를 넘으면 Zip64 확장 필드와 Zip64 end of central directory 를 쓴다.
+     */
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int DATA_DESCRIPTOR = 0x08074b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int ZIP64_END = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int END = 0x06054b50;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int VERSION_MADE_BY = (3 << 8) | VERSION_ZIP64; // unix
+
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    // 미리 압축해둔 엔트리
+    public record PreparedEntry(String name, long modifiedTimeMillis, int method, long crc, long size, byte[] data) {
+    }
+
+    private record CentralEntry(byte[] name, long modifiedTimeMillis, int flags, int method, long crc,
+                                long compressedSize, long size, long offset) {
+    }
+
+    private final CountingOutputStream out;
+    private final List<CentralEntry> centralEntries = new ArrayList<>();
+
+    public ZipArchiveWriter(OutputStream out) {
+        this.out = new CountingOutputStream(out);
+    }
+
+    // 메모리로 압축. 병렬로 불러도 됨
+    public static PreparedEntry prepare(String name, long modifiedTimeMillis, Path source) throws IOException {
+        byte[] content = Files.readAllBytes(source);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(content);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            compressed.write(buffer, 0, length);
+            if (compressed.size() >= content.length) {
+                // 압축해도 안 줄어드는 파일 (이미 압축된 파일 등)
+                return new PreparedEntry(name, modifiedTimeMillis, STORED, crc.getValue(), content.length, content);
+            }
+        }
+        return new PreparedEntry(name, modifiedTimeMillis, DEFLATED, crc.getValue(), content.length, compressed.toByteArray());
+    }
+
+    public void write(PreparedEntry entry) throws IOException {
+        byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+        long offset = out.count();
+        long compressedSize = entry.data().length;
+        boolean zip64 = entry.size() >= ZIP64_LIMIT || compressedSize >= ZIP64_LIMIT;
+
+        LittleEndian header = new LittleEndian(30 + name.length + (zip64 ? 20 : 0));
+        header.putInt(LOCAL_HEADER);
+        header.putShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        header.putShort(FLAG_UTF8);
+        header.putShort(entry.method());
+        header.putInt(dosTime(entry.modifiedTimeMillis()));
+        header.putInt((int) entry.crc());
+        header.putInt(zip64 ? (int) ZIP64_LIMIT : (int) compressedSize);
+        header.putInt(zip64 ? (int) ZIP64_LIMIT : (int) entry.size());
+        header.putShort(name.length);
+        header.putShort(zip64 ? 20 : 0);
+        header.put(name);
+        if (zip64) {
+            header.putShort(0x0001);
+            header.putShort(16);
+            header.putLong(entry.size());
+            header.putLong(compressedSize);
+        }
+        header.writeTo(out);
+        out.write(entry.data());
+
+        centralEntries.add(new CentralEntry(name, entry.modifiedTimeMillis(), FLAG_UTF8, entry.method(), entry.crc(),
+                compressedSize, entry.size(), offset));
+    }
+
+    // 큰 파일 : 메모리에 올리지 않고 압축하면서 바로 쓴다
+    public void writeStreaming(String entryName, long modifiedTimeMillis, long expectedSize, Path source) throws IOException {
+        byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+        long offset = out.count();
+        // 압축 결과가 원본보다 조금 커질 수 있으므로 여유를 두고 판단
+        boolean zip64 = expectedSize >= ZIP64_LIMIT - (1 << 20);
+        int flags = FLAG_UTF8 | FLAG_DATA_DESCRIPTOR;
+
+        // 1. 로컬 헤더 (CRC, 크기는 0, 나중에 data descriptor 로)
+        LittleEndian header = new LittleEndian(30 + name.length + (zip64 ? 20 : 0));
+        header.putInt(LOCAL_HEADER);
+        header.putShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        header.putShort(flags);
+        header.putShort(DEFLATED);
+        header.putInt(dosTime(modifiedTimeMillis));
+        header.putInt(0);
+        header.putInt(zip64 ? (int) ZIP64_LIMIT : 0);
+        header.putInt(zip64 ? (int) ZIP64_LIMIT : 0);
+        header.putShort(name.length);
+        header.putShort(zip64 ? 20 : 0);
+        header.put(name);
+        if (zip64) {
+            header.putShort(0x0001);
+            header.putShort(16);
+            header.putLong(0);
+            header.putLong(0);
+        }
+        header.writeTo(out);
+
+        // 2. 내용 압축
+        long dataStart = out.count();
+        CRC32 crc = new CRC32();
+        long size = 0;
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        DeflaterOutputStream deflaterOut = new DeflaterOutputStream(new NonClosingOutputStream(out), deflater, 64 * 1024);
+        try (InputStream in = Files.newInputStream(source)) {
+            byte[] buffer = new byte[64 * 1024];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, length);
+                deflaterOut.write(buffer, 0, length);
+                size += length;
+            }
+        }
+        deflaterOut.finish();
+        long compressedSize = out.count() - dataStart;
+        if (!zip64 && (size >= ZIP64_LIMIT || compressedSize >= ZIP64_LIMIT)) {
+            throw new IOException("file grew while archiving : " + entryName);
+        }
+
+        // 3. data descriptor
+        LittleEndian descriptor = new LittleEndian(zip64 ? 24 : 16);
+        descriptor.putInt(DATA_DESCRIPTOR);
+        descriptor.putInt((int) crc.getValue());
+        if (zip64) {
+            descriptor.putLong(compressedSize);
+            descriptor.putLong(size);
+        } else {
+            descriptor.putInt((int) compressedSize);
+            descriptor.putInt((int) size);
+        }
+        descriptor.writeTo(out);
+
+        centralEntries.add(new CentralEntry(name, modifiedTimeMillis, flags, DEFLATED, crc.getValue(),
+                compressedSize, size, offset));
+    }
+
+    // central directory + end of central directory
+    public void finish() throws IOException {
+        // 1. central directory
+        long centralStart = out.count();
+        for (CentralEntry entry : centralEntries) {
+            boolean sizeOverflow = entry.size() >= ZIP64_LIMIT;
+            boolean compressedOverflow = entry.compressedSize() >= ZIP64_LIMIT;
+            boolean offsetOverflow = entry.offset() >= ZIP64_LIMIT;
+            int extraLength = (sizeOverflow ? 8 : 0) + (compressedOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+            boolean zip64 = extraLength > 0;
+
+            LittleEndian header = new LittleEndian(46 + entry.name().length + (zip64 ? 4 + extraLength : 0));
+            header.putInt(CENTRAL_HEADER);
+            header.putShort(VERSION_MADE_BY);
+            header.putShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+            header.putShort(entry.flags());
+            header.putShort(entry.method());
+            header.putInt(dosTime(entry.modifiedTimeMillis()));
+            header.putInt((int) entry.crc());
+            header.putInt(compressedOverflow ? (int) ZIP64_LIMIT : (int) entry.compressedSize());
+            header.putInt(sizeOverflow ? (int) ZIP64_LIMIT : (int) entry.size());
+            header.putShort(entry.name().length);
+            header.putShort(zip64 ? 4 + extraLength : 0);
+            header.putShort(0);                 // comment
+            header.putShort(0);                 // disk
+            header.putShort(0);                 // internal attributes
+            header.putInt(0100644 << 16);       // external attributes (unix mode)
+            header.putInt(offsetOverflow ? (int) ZIP64_LIMIT : (int) entry.offset());
+            header.put(entry.name());
+            if (zip64) {
+                // 넘친 필드만 이 순서대로
+                header.putShort(0x0001);
+                header.putShort(extraLength);
+                if (sizeOverflow) {
+                    header.putLong(entry.size());
+                }
+                if (compressedOverflow) {
+                    header.putLong(entry.compressedSize());
+                }
+                if (offsetOverflow) {
+                    header.putLong(entry.offset());
+                }
+            }
+            header.writeTo(out);
+        }
+        long centralEnd = out.count();
+        long centralSize = centralEnd - centralStart;
+        long count = centralEntries.size();
+
+        // 2. Zip64 end of central directory + locator
+        boolean zip64 = count >= 0xFFFF || centralSize >= ZIP64_LIMIT || centralStart >= ZIP64_LIMIT;
+        if (zip64) {
+            LittleEndian end64 = new LittleEndian(56 + 20);
+            end64.putInt(ZIP64_END);
+            end64.putLong(44);                  // 이 필드 뒤의 레코드 크기
+            end64.putShort(VERSION_MADE_BY);
+            end64.putShort(VERSION_ZIP64);
+            end64.putInt(0);                    // disk
+            end64.putInt(0);                    // central directory 시작 disk
+            end64.putLong(count);
+            end64.putLong(count);
+            end64.putLong(centralSize);
+            end64.putLong(centralStart);
+            end64.putInt(ZIP64_LOCATOR);
+            end64.putInt(0);
+            end64.putLong(centralEnd);          // zip64 end 레코드 위치
+            end64.putInt(1);                    // disk 개수
+            end64.writeTo(out);
+        }
+
+        // 3. end of central directory
+        LittleEndian end = new LittleEndian(22);
+        end.putInt(END);
+        end.putShort(0);
+        end.putShort(0);
+        end.putShort(zip64 ? 0xFFFF : (int) count);
+        end.putShort(zip64 ? 0xFFFF : (int) count);
+        end.putInt(zip64 ? (int) ZIP64_LIMIT : (int) centralSize);
+        end.putInt(zip64 ? (int) ZIP64_LIMIT : (int) centralStart);
+        end.putShort(0);                        // comment
+        end.writeTo(out);
+        out.flush();
+    }
+
+    // MS-DOS 날짜/시간 (1980 년 이전은 1980-01-01 로)
+    private static int dosTime(long modifiedTimeMillis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(modifiedTimeMillis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    private static class LittleEndian {
+        private final ByteBuffer buffer;
+
+        LittleEndian(int capacity) {
+            buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void putShort(int value) {
+            buffer.putShort((short) value);
+        }
+
+        void putInt(int value) {
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) {
+            buffer.putLong(value);
+        }
+
+        void put(byte[] bytes) {
+            buffer.put(bytes);
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(buffer.array(), 0, buffer.position());
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    // DeflaterOutputStream.finish() 후에 아래 스트림이 닫히지 않도록
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package bench;
+
+import util.DurableBatch;
+import util.FileUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class WriteBenchmark {
+
+    /**
+     * 오브젝트 쓰기 방식별 처리량 비교. (임시 디렉토리에 fileCount 개의 파일을 병렬로 씀)
+     * 1. plain         : Files.write (기존 방식)
+     * 2. atomic        : 임시파일 + rename, fsync 없음
+     * 3. fsync-each    : 임시파일 + 파일마다 fsync + rename
+     * 4. fsync-batched : 임시파일 + 마지막에 모아서 fsync + rename + 디렉토리 fsync (core.durable)
+     */
+
+    public void run(int fileCount, int fileSizeKb) throws IOException {
+        byte[][] contents = new byte[fileCount][];
+        Random random = new Random(42);
+        for (int i = 0; i < fileCount; i++) {
+            contents[i] = new byte[fileSizeKb * 1024];
+            random.nextBytes(contents[i]);
+        }
+        System.out.println("[bench] " + fileCount + " files x " + fileSizeKb + " KB");
+
+        measure("plain", contents, (dir, i) -> Files.write(dir.resolve("f" + i), contents[i]), null);
+        measure("atomic", contents, (dir, i) -> FileUtil.storeAtomically(dir.resolve("f" + i), contents[i], null), null);
+        measure("fsync-each", contents, (dir, i) -> {
+            DurableBatch single = new DurableBatch();
+            FileUtil.storeAtomically(dir.resolve("f" + i), contents[i], single);
+            single.flush();
+        }, null);
+        DurableBatch batch = new DurableBatch();
+        measure("fsync-batched", contents, (dir, i) -> FileUtil.storeAtomically(dir.resolve("f" + i), contents[i], batch), batch);
+    }
+
+    private interface Writer {
+        void write(Path directory, int index) throws IOException;
+    }
+
+    private static void measure(String name, byte[][] contents, Writer writer, DurableBatch batch) throws IOException {
+        Path directory = Files.createTempDirectory("sfv-bench-");
+        try {
+            long start = System.nanoTime();
+            IntStream.range(0, contents.length).parallel().forEach(i -> {
+                try {
+                    writer.write(directory, i);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (batch != null) {
+                batch.flush();
+            }
+            long elapsedNanos = System.nanoTime() - start;
+
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            long totalBytes = (long) contents.length * contents[0].length;
+            System.out.printf("%-14s %8d ms  %10.0f files/s  %8.1f MB/s%n", name, elapsedNanos / 1_000_000,
+                    contents.length / seconds, totalBytes / seconds / (1024 * 1024));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (var stream = Files.walk(directory)) {
+            stream.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    System.err.println("Warning: Could not delete " + path);
+                }
+            });
+        }
+    }
+}
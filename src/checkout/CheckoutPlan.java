@@ -0,0 +1,146 @@
+package checkout;
+
+import commit.CommitSnapshot;
+
+import java.util.*;
+
+public class CheckoutPlan {
+
+    /**
+     * current 상태의 작업 디렉토리를 target 상태로 바꾸기 위해 할 일을 미리 계산해둔 것.
+     * 두 스냅샷 모두 경로 순으로 정렬되어 있으므로 한 번 나란히 훑어서 (merge) 만든다.
+     *
+     * deletes         : current 에만 있는 파일
+     * restores        : target 에만 있거나 해시가 다른 파일 (target 스냅샷의 위치, 경로)
+     * directories     : restores 를 위해 새로 만들어야 하는 디렉토리. 얕은 것부터 (부모가 먼저)
+     * cleanupCandidates : 삭제한 파일의 상위 디렉토리. 깊은 것부터 (비었으면 지움)
+     * 디스크 작업은 바뀐 파일 수에만 비례하고, 전체 트리를 walk 하지 않는다.
+     */
+
+    private final List<String> deletes = new ArrayList<>();
+    private int[] restoreIndices = new int[16];
+    private final List<String> restorePaths = new ArrayList<>();
+    private final List<String> directories;
+    private final List<String> cleanupCandidates;
+
+    private CheckoutPlan(CommitSnapshot currentSnapshot, CommitSnapshot targetSnapshot) {
+        // 1. 두 스냅샷을 나란히 훑으면서 삭제/복원 대상 찾기
+        Iterator<String> currentPaths = currentSnapshot.pathIterator();
+        Iterator<String> targetPaths = targetSnapshot.pathIterator();
+        String currentPath = currentPaths.hasNext() ? currentPaths.next() : null;
+        String targetPath = targetPaths.hasNext() ? targetPaths.next() : null;
+        int i = 0;
+        int j = 0;
+        while (currentPath != null || targetPath != null) {
+            int compare;
+            if (currentPath == null) {
+                compare = 1;
+            } else if (targetPath == null) {
+                compare = -1;
+            } else {
+                compare = currentPath.compareTo(targetPath);
+            }
+
+            if (compare < 0) {
+                deletes.add(currentPath);
+            } else if (compare > 0) {
+                addRestore(j, targetPath);
+            } else if (!targetSnapshot.hashEquals(j, currentSnapshot, i)) {
+                addRestore(j, targetPath); // 양쪽에 있지만 내용이 다름
+            }
+
+            if (compare <= 0) {
+                currentPath = currentPaths.hasNext() ? currentPaths.next() : null;
+                i++;
+            }
+            if (compare >= 0) {
+                targetPath = targetPaths.hasNext() ? targetPaths.next() : null;
+                j++;
+            }
+        }
+
+        // 2. 만들어야 하는 디렉토리 : current 에 파일이 하나도 없던 디렉토리만 (있던 디렉토리는 아직 지우기 전이므로 존재함)
+        Set<String> missing = new HashSet<>();
+        for (String path : restorePaths) {
+            for (String parent = parentOf(path); parent != null; parent = parentOf(parent)) {
+                if (missing.contains(parent) || containsDirectory(currentSnapshot, parent)) {
+                    break; // 이 위쪽은 이미 확인했거나 존재함
+                }
+                missing.add(parent);
+            }
+        }
+        directories = new ArrayList<>(missing);
+        directories.sort(Comparator.comparingInt(CheckoutPlan::depthOf).thenComparing(Comparator.naturalOrder()));
+
+        // 3. 비었을 수 있는 디렉토리 : 삭제한 파일의 상위 디렉토리들
+        Set<String> candidates = new HashSet<>();
+        for (String path : deletes) {
+            for (String parent = parentOf(path); parent != null && candidates.add(parent); parent = parentOf(parent)) {
+                // 상위로 올라가면서 추가 (이미 추가된 디렉토리를 만나면 그 위도 이미 추가됨)
+            }
+        }
+        cleanupCandidates = new ArrayList<>(candidates);
+        cleanupCandidates.sort(Comparator.comparingInt(CheckoutPlan::depthOf).reversed().thenComparing(Comparator.naturalOrder()));
+    }
+
+    public static CheckoutPlan of(CommitSnapshot currentSnapshot, CommitSnapshot targetSnapshot) {
+        return new CheckoutPlan(currentSnapshot, targetSnapshot);
+    }
+
+    public List<String> getDeletes() {
+        return deletes;
+    }
+
+    public int restoreCount() {
+        return restorePaths.size();
+    }
+
+    // i 번째 복원 대상의 target 스냅샷 위치
+    public int restoreIndex(int i) {
+        return restoreIndices[i];
+    }
+
+    public String restorePath(int i) {
+        return restorePaths.get(i);
+    }
+
+    public List<String> getDirectories() {
+        return directories;
+    }
+
+    public List<String> getCleanupCandidates() {
+        return cleanupCandidates;
+    }
+
+    private void addRestore(int targetIndex, String path) {
+        int count = restorePaths.size();
+        if (count == restoreIndices.length) {
+            restoreIndices = Arrays.copyOf(restoreIndices, count * 2);
+        }
+        restoreIndices[count] = targetIndex;
+        restorePaths.add(path);
+    }
+
+    // snapshot 에 directory 아래의 파일이 하나라도 있는지
+    private static boolean containsDirectory(CommitSnapshot snapshot, String directory) {
+        String prefix = directory + "/";
+        int index = snapshot.lowerBound(prefix);
+        return index < snapshot.size() && snapshot.getPath(index).startsWith(prefix);
+    }
+
+    // 루트 바로 아래면 null
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? null : path.substring(0, slash);
+    }
+
+    private static int depthOf(String path) {
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+}
@@ -1,95 +1,175 @@
 package checkout;
 
+import commit.Commit;
 import commit.CommitService;
+import commit.CommitSnapshot;
 import commit.ModifyDetector;
 import util.FileUtil;
+import util.OutputSink;
+import util.RepositoryLock;
+import util.SfvConfig;
+import util.Tuning;
+import util.WorkTreeFilter;
 
 import java.io.IOException;
-import java.nio.file.FileSystemException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.stream.IntStream;
 
 public class CheckoutService {
 
+    // 기본값 (sfv tune 을 안 했을 때)
+    public static final Tuning DEFAULT_TUNING = new Tuning("v4", 16, 100);
+
+    @SuppressWarnings("try")
     public void checkout(String partialTargetCommitId) throws IOException, InterruptedException {
         FileUtil.validateSfvRepository();
+        try (RepositoryLock ignored = RepositoryLock.exclusive()) {
+
+            // 1. 완전한 커밋 ID 찾기 (커밋ID 를 다 입력하는건 불편하므로, partialCommitId를 입력받은다음 fullCommitId로 변환)
+            String targetCommitId = FileUtil.findMatchingCommitId(partialTargetCommitId);
+            String head = FileUtil.getHEADValue();
+            System.out.println("[checkout] " + head + " -> " + targetCommitId);
+
+            // 2. 현재 작업 디렉토리의 커밋 후 변경사항 확인. 커밋 후 변경사항이 있으면 안됨.
+            // 반드시 커밋 후에 체크아웃 요망 (HEAD 커밋은 한 번만 읽어서 아래에서도 그대로 씀)
+            WorkTreeFilter filter = WorkTreeFilter.load();
+            Commit headCommit = head.isEmpty() ? null : CommitService.loadCommitFromCommitDirectory(head); // 첫 pull 이면 없음
+            List<Path> modifiedFiles = ModifyDetector.findModifiedFiles(headCommit, filter);
+            if (!modifiedFiles.isEmpty()) {
+                throw new FileSystemException("You have changes after commit. Please commit them first.");
+            }
+
+            // 3. 현재 커밋, 타겟 커밋의 정보 가져오기 (sparse 패턴이 있으면 패턴 안의 항목만)
+            // 경로 순으로 정렬된 컬럼 형식. i 번째 파일의 크기, 수정시간, 해시를 바로 꺼낼 수 있음 (CommitSnapshot 참고)
+            CommitSnapshot currentSnapshot = headCommit == null ? CommitSnapshot.EMPTY : filter.filter(headCommit.getSnapshot());
+            CommitSnapshot targetSnapshot = filter.filter(CommitService.loadCommitFromCommitDirectory(targetCommitId).getSnapshot());
+
+            // 4, 5. 파일 갱신, 빈 디렉토리 정리
+            updateWorkingTree(currentSnapshot, targetSnapshot);
 
-        // 1. 완전한 커밋 ID 찾기 (커밋ID 를 다 입력하는건 불편하므로, partialCommitId를 입력받은다음 fullCommitId로 변환)
-        String targetCommitId = FileUtil.findMatchingCommitId(partialTargetCommitId);
-        System.out.println("[checkout] " + FileUtil.getHEADValue() + " -> " + targetCommitId);
+            // 6. HEAD 업데이트
+            FileUtil.updateHEADValue(targetCommitId, SfvConfig.load().getBoolean(SfvConfig.CORE_DURABLE, false));
 
-        // 2. 현재 작업 디렉토리의 커밋 후 변경사항 확인. 커밋 후 변경사항이 있으면 안됨.
-        // 반드시 커밋 후에 체크아웃 요망
-        List<Path> modifiedFiles = ModifyDetector.findModifiedFiles();
-        if (!modifiedFiles.isEmpty()) {
-            throw new FileSystemException("You have changes after commit. Please commit them first.");
+            System.out.println("checkout complete.");
         }
+    }
 
-        // 3. 현재 커밋, 타겟 커밋의 정보 가져오기
-        // key: src/Main.java
-        // value: 923,1732756949846,2b1903dbff5764c8a2829759740f8fec68d05c56
-        // ...
-        Map<String, String> currentCommitMetadataMap = CommitService.loadCommitFromCommitDirectory(FileUtil.getHEADValue()).getFileMetadataMap();
-        Map<String, String> targetCommitMetadataMap = CommitService.loadCommitFromCommitDirectory(targetCommitId).getFileMetadataMap();
+    /**
+     * sparse 패턴이 바뀌었을 때 HEAD 기준으로 작업 디렉토리를 다시 맞춘다.
+     * 새로 범위에 들어온 파일은 복원하고, 범위에서 빠진 파일은 지운다.
+     */
+    public void applySparsePatterns(WorkTreeFilter previousFilter, WorkTreeFilter nextFilter) throws IOException {
+        String head = FileUtil.getHEADValue();
+        if (head.isEmpty()) {
+            return;
+        }
+        CommitSnapshot headSnapshot = CommitService.loadCommitFromCommitDirectory(head).getSnapshot();
+        updateWorkingTree(previousFilter.filter(headSnapshot), nextFilter.filter(headSnapshot));
+    }
 
+    private void updateWorkingTree(CommitSnapshot currentSnapshot, CommitSnapshot targetSnapshot) throws IOException {
+        updateWorkingTree(currentSnapshot, targetSnapshot, Tuning.load(SfvConfig.CHECKOUT, DEFAULT_TUNING));
+    }
+
+    /**
+     * current 상태의 작업 디렉토리를 target 상태로 바꾼다
+     * @param tuning 복원 방식 (checkout.strategy : v1 ~ v4) 과 checkout.threads, checkout.chunkSize
+     */
+    public void updateWorkingTree(CommitSnapshot currentSnapshot, CommitSnapshot targetSnapshot, Tuning tuning) throws IOException {
+        // 4-0. 할 일 계산 (삭제, 만들 디렉토리, 복원, 정리할 디렉토리)
+        CheckoutPlan plan = CheckoutPlan.of(currentSnapshot, targetSnapshot);
+
+        // 4-1. 파일 갱신 (삭제, 병렬)
+        deleteFiles(plan.getDeletes());
 
-        // 4-1. 파일 갱신 (삭제)
-        Set<String> filesToDelete = new HashSet<>(currentCommitMetadataMap.keySet());
-        filesToDelete.removeAll(targetCommitMetadataMap.keySet());
-        for (String filePath : filesToDelete) {
-            System.out.println("\tdeleting " + filePath);
-            Files.delete(FileUtil.getRootPath().resolve(filePath));
+        // 4-2. 디렉토리 생성 (부모부터 순서대로 한 번씩. 복원하는 스레드들이 각자 createDirectories 하지 않도록)
+        for (String directory : plan.getDirectories()) {
+            try {
+                Files.createDirectory(FileUtil.getRootPath().resolve(directory));
+            } catch (FileAlreadyExistsException e) {
+                // 추적하지 않는 디렉토리가 이미 있는 경우
+            }
         }
 
-        // 4-2. 파일 갱신 (복원, 수정) TODO : 병렬처리 가능 구간
-        restoreFileV4(targetCommitMetadataMap, currentCommitMetadataMap); // TODO
+        // 4-3. 파일 갱신 (복원, 수정)
+        restoreFiles(targetSnapshot, plan, tuning);
 
-        // 5. 빈 디렉토리 정리
-        cleanEmptyDirectories(FileUtil.getRootPath());
+        // 5. 빈 디렉토리 정리 (삭제한 파일의 상위 디렉토리만)
+        cleanEmptyDirectories(plan.getCleanupCandidates());
+    }
 
-        // 6. HEAD 업데이트
-        FileUtil.updateHEADValue(targetCommitId);
+    private static void deleteFiles(List<String> filesToDelete) throws IOException {
+        try {
+            filesToDelete.parallelStream().forEach(filePath -> {
+                OutputSink.item("deleting", "\tdeleting " + filePath);
+                try {
+                    Files.deleteIfExists(FileUtil.getRootPath().resolve(filePath));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-        System.out.println("checkout complete.");
+    // 계획의 i 번째 복원 대상을 오브젝트에서 복사
+    private static void restoreFile(CommitSnapshot targetSnapshot, CheckoutPlan plan, int i) throws IOException {
+        int targetIndex = plan.restoreIndex(i);
+        Path filePath = FileUtil.getRootPath().resolve(plan.restorePath(i));
+        Path objectPath = FileUtil.getObjectPath(targetSnapshot.getHash(targetIndex));
+        OutputSink.item("restoring", "\trestoring " + filePath);
+        try {
+            Files.copy(objectPath, filePath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            if (!Files.exists(objectPath)) {
+                throw e;
+            }
+            // 커밋 후 지워진 디렉토리 (스냅샷에는 있으므로 계획에서는 있다고 봄)
+            Files.createDirectories(filePath.getParent());
+            Files.copy(objectPath, filePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // 저장된 수정시간으로 맞춰야 status 에서 변경으로 안 잡힘
+        Files.setLastModifiedTime(filePath, FileTime.fromMillis(targetSnapshot.getModifiedTime(targetIndex)));
     }
 
-    // V1 : 싱글 스레드
-    private static void restoreFileV1(Map<String, String> targetCommitMetadataMap, Map<String, String> currentCommitMetadataMap) throws IOException {
-        for (Map.Entry<String, String> entry : targetCommitMetadataMap.entrySet()) {
-            String targetFilePath = entry.getKey();
-            String targetFileHash = entry.getValue().split(",")[2];
-            
-            // 현재 커밋에 파일이 없거나 해시값이 다른 경우 복원
-            if (!currentCommitMetadataMap.containsKey(targetFilePath) || 
-                !currentCommitMetadataMap.get(targetFilePath).split(",")[2].equals(targetFileHash)) {
-                Path filePath = FileUtil.getRootPath().resolve(targetFilePath);
-                Files.createDirectories(filePath.getParent());
-                System.out.println("\trestoring " + filePath);
-                Files.copy(FileUtil.getObjectPath(targetFileHash), filePath, StandardCopyOption.REPLACE_EXISTING);
+    private static void restoreFiles(CommitSnapshot targetSnapshot, CheckoutPlan plan, Tuning tuning) throws IOException {
+        int threadCount = tuning.threads() > 0 ? tuning.threads() : DEFAULT_TUNING.threads();
+        int chunkSize = tuning.chunkSize() > 0 ? tuning.chunkSize() : DEFAULT_TUNING.chunkSize();
+        switch (tuning.strategy()) {
+            case "v1" -> restoreFileV1(targetSnapshot, plan);
+            case "v2" -> restoreFileV2(targetSnapshot, plan);
+            case "v3" -> {
+                try {
+                    restoreFileV3(targetSnapshot, plan, threadCount);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("checkout interrupted");
+                }
             }
+            default -> restoreFileV4(targetSnapshot, plan, threadCount, chunkSize);
+        }
+    }
+
+    // V1 : 싱글 스레드
+    private static void restoreFileV1(CommitSnapshot targetSnapshot, CheckoutPlan plan) throws IOException {
+        for (int i = 0; i < plan.restoreCount(); i++) {
+            restoreFile(targetSnapshot, plan, i);
         }
     }
 
     // V2 : parallel stream
-    private static void restoreFileV2(Map<String, String> targetCommitMetadataMap, Map<String, String> currentCommitMetadataMap) throws IOException {
-        targetCommitMetadataMap.entrySet()
-                .parallelStream()
-                .forEach(entry -> {
+    private static void restoreFileV2(CommitSnapshot targetSnapshot, CheckoutPlan plan) throws IOException {
+        IntStream.range(0, plan.restoreCount())
+                .parallel()
+                .forEach(i -> {
                     try {
-                        String targetFilePath = entry.getKey();
-                        String targetFileHash = entry.getValue().split(",")[2];
-
-                        // 현재 커밋에 파일이 없거나 해시값이 다른 경우 복원
-                        if (!currentCommitMetadataMap.containsKey(targetFilePath) ||
-                                !currentCommitMetadataMap.get(targetFilePath).split(",")[2].equals(targetFileHash)) {
-                            Path filePath = FileUtil.getRootPath().resolve(targetFilePath);
-                            Files.createDirectories(filePath.getParent());
-                            System.out.println("\trestoring " + filePath);
-                            Files.copy(FileUtil.getObjectPath(targetFileHash), filePath, StandardCopyOption.REPLACE_EXISTING);
-                        }
+                        restoreFile(targetSnapshot, plan, i);
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
@@ -98,12 +178,10 @@ public class CheckoutService {
 
 
     // V3 : 고정 개수 청크 분배
-    private static void restoreFileV3(Map<String, String> targetCommitMetadataMap, Map<String, String> currentCommitMetadataMap) throws IOException, InterruptedException {
-        int threadCount = 11; // 스레드 개수
+    private static void restoreFileV3(CommitSnapshot targetSnapshot, CheckoutPlan plan, int threadCount) throws IOException, InterruptedException {
         ExecutorService executor = Executors.newFixedThreadPool(threadCount);
 
-        List<Map.Entry<String, String>> entries = new ArrayList<>(targetCommitMetadataMap.entrySet());
-        int totalSize = entries.size();
+        int totalSize = plan.restoreCount();
         int chunkSize = (int) Math.ceil((double) totalSize / threadCount); // 고정된 청크 크기 계산
 
         List<Future<?>> futures = new ArrayList<>();
@@ -111,25 +189,14 @@ public class CheckoutService {
         // 각 스레드에 고정된 작업 범위를 할당
         for (int i = 0; i < threadCount; i++) {
             int start = i * chunkSize;
+            if (start >= totalSize) break; // 파일 수가 스레드 수보다 적은 경우
             int end = Math.min(start + chunkSize, totalSize); // 범위 초과 방지
 
             // 고정된 범위를 처리하는 작업
             futures.add(executor.submit(() -> {
-                for (int j = start; j < end; j++) {
-                    Map.Entry<String, String> entry = entries.get(j);
-                    String targetFilePath = entry.getKey();
-                    String targetFileHash = entry.getValue().split(",")[2];
-
+                for (int index = start; index < end; index++) {
                     try {
-                        // 현재 커밋에 파일이 없거나 해시값이 다른 경우 복원
-                        if (!currentCommitMetadataMap.containsKey(targetFilePath) ||
-                                !currentCommitMetadataMap.get(targetFilePath).split(",")[2].equals(targetFileHash)) {
-                            Path filePath = FileUtil.getRootPath().resolve(targetFilePath);
-
-                            Files.createDirectories(filePath.getParent());
-                            System.out.println("\trestoring " + filePath);
-                            Files.copy(FileUtil.getObjectPath(targetFileHash), filePath, StandardCopyOption.REPLACE_EXISTING);
-                        }
+                        restoreFile(targetSnapshot, plan, index);
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
@@ -152,34 +219,23 @@ public class CheckoutService {
     }
 
     // V4 : 생산자 - 소비자 (청크나눠서. 가변 개수 청크)
-    private static void restoreFileV4(Map<String, String> targetCommitMetadataMap, Map<String, String> currentCommitMetadataMap) throws IOException {
-        int threadCount = 16; // 스레드 개수.
-        BlockingQueue<List<Map.Entry<String, String>>> workQueue = new LinkedBlockingQueue<>();
+    private static void restoreFileV4(CommitSnapshot targetSnapshot, CheckoutPlan plan, int threadCount, int chunkSize) throws IOException {
+        BlockingQueue<int[]> workQueue = new LinkedBlockingQueue<>(); // 청크 = 스냅샷의 [시작, 끝) 범위
         ExecutorService executor = Executors.newFixedThreadPool(threadCount);
         List<Future<?>> futures = new ArrayList<>();
 
         // 1. 생산자: 작업을 청크 단위로 분할하여 큐에 추가
         Future<?> producerFuture = executor.submit(() -> {
             try {
-                int chunkSize = 100; // 청크사이즈도 조절해야함. TODO
-                List<Map.Entry<String, String>> currentChunk = new ArrayList<>(chunkSize);
-
-                for (Map.Entry<String, String> entry : targetCommitMetadataMap.entrySet()) {
-                    currentChunk.add(entry);
-                    if (currentChunk.size() >= chunkSize) {
-                        workQueue.add(new ArrayList<>(currentChunk));
-                        currentChunk.clear();
-                    }
-                }
+                int totalSize = plan.restoreCount();
 
-                // 마지막 청크 처리
-                if (!currentChunk.isEmpty()) {
-                    workQueue.add(new ArrayList<>(currentChunk));
+                for (int start = 0; start < totalSize; start += chunkSize) {
+                    workQueue.add(new int[]{start, Math.min(start + chunkSize, totalSize)});
                 }
 
                 // 작업 완료 표시
                 for (int i = 0; i < threadCount; i++) {
-                    workQueue.add(Collections.emptyList());
+                    workQueue.add(new int[0]);
                 }
             } catch (Exception e) {
                 throw new RuntimeException(e);
@@ -191,29 +247,21 @@ public class CheckoutService {
             Future<?> future = executor.submit(() -> {
                 try {
                     while (true) {
-                        List<Map.Entry<String, String>> chunk = workQueue.take();
-                        if (chunk.isEmpty()) {
+                        int[] chunk = workQueue.take();
+                        if (chunk.length == 0) {
                             break;
                         }
 
-                        for (Map.Entry<String, String> entry : chunk) {
-                            String targetFilePath = entry.getKey();
-                            String targetFileHash = entry.getValue().split(",")[2];
-
-                            // 현재 커밋에 파일이 없거나 해시값이 다른 경우 복원
-                            if (!currentCommitMetadataMap.containsKey(targetFilePath) ||
-                                    !currentCommitMetadataMap.get(targetFilePath).split(",")[2].equals(targetFileHash)) {
-                                Path filePath = FileUtil.getRootPath().resolve(targetFilePath);
-                                Files.createDirectories(filePath.getParent());
-                                System.out.println("\trestoring " + filePath);
-                                Files.copy(FileUtil.getObjectPath(targetFileHash), filePath, StandardCopyOption.REPLACE_EXISTING);
+                        for (int index = chunk[0]; index < chunk[1]; index++) {
+                            try {
+                                restoreFile(targetSnapshot, plan, index);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
                             }
                         }
                     }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
                 }
             });
             futures.add(future);
@@ -239,25 +287,28 @@ public class CheckoutService {
         }
     }
 
-    // 빈 디렉토리를 정리하는 헬퍼 메서드
-    private void cleanEmptyDirectories(Path directory) throws IOException {
-        if (directory.equals(FileUtil.getDotSfvPath())) {
-            return;  // .sfv 디렉토리는 건드리지 않음
+    // 빈 디렉토리를 정리하는 헬퍼 메서드. 후보는 깊은 것부터 들어있으므로 하위가 먼저 지워진다
+    private static void cleanEmptyDirectories(List<String> candidates) {
+        for (String candidate : candidates) {
+            Path directory = FileUtil.getRootPath().resolve(candidate);
+            if (directory.startsWith(FileUtil.getDotSfvPath())) {
+                continue;  // .sfv 디렉토리는 건드리지 않음
+            }
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                if (entries.iterator().hasNext()) {
+                    continue; // 비어있지 않음
+                }
+            } catch (NoSuchFileException | NotDirectoryException e) {
+                continue;
+            } catch (IOException e) {
+                System.err.println("Warning: Could not process directory: " + directory);
+                continue;
+            }
+            try {
+                Files.delete(directory);
+            } catch (IOException e) {
+                System.err.println("Warning: Could not process directory: " + directory);
+            }
         }
-
-        Files.walk(directory)
-                .sorted(Comparator.reverseOrder())  // 하위 디렉토리부터 처리하기 위해 역순 정렬
-                .filter(Files::isDirectory)
-                .filter(path -> !path.equals(directory))  // 루트 디렉토리는 제외
-                .filter(path -> !path.equals(FileUtil.getDotSfvPath()))  // .sfv 디렉토리는 제외
-                .forEach(path -> {
-                    try {
-                        if (Files.list(path).count() == 0) {  // 디렉토리가 비어있는지 확인
-                            Files.delete(path);
-                        }
-                    } catch (IOException e) {
-                        System.err.println("Warning: Could not process directory: " + path);
-                    }
-                });
     }
 }
@@ -1,10 +1,8 @@
 package commit;
 
-import java.io.Serializable;
+import java.io.*;
 import java.time.LocalDateTime;
-import java.util.Collections;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class Commit implements Serializable {
     /**
@@ -16,27 +14,41 @@ public class Commit implements Serializable {
      *     message: "사용자가 입력한 커밋 메시지"
      *     timestamp: "커밋 생성 시간"
      *     previousCommitId: "이전 커밋의 해시값"
-     *     fileHashes: {
-     *         "파일경로1": "해당 파일의 해시값1",
-     *         "파일경로2": "해당 파일의 해시값2",
-     *         ... 
-     *     }
+     *     snapshot: 경로 순으로 정렬된 파일 메타데이터 (CommitSnapshot 참고)
      *  }
+     *
+     * 예전 형식의 커밋 파일은 snapshot 대신 fileHashes ("파일경로" -> "크기,수정시간,해시") 를 가지고 있다.
+     * 읽을 때 snapshot 으로 변환한다.
+     * 호환은 한 방향뿐이다. 새 형식의 커밋 파일은 fileHashes 를 null 로 쓰고 CommitSnapshot 클래스를 담고 있으므로
+     * CommitSnapshot 이전 버전의 sfv 로는 읽을 수 없다.
      */
     private static final long serialVersionUID = 1L;
 
-    private final String id;
-    private final String message;
-    private final LocalDateTime timestamp;
-    private final String previousCommitId;
-    private final Map<String, String> fileHashes;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("message", String.class),
+            new ObjectStreamField("timestamp", LocalDateTime.class),
+            new ObjectStreamField("previousCommitId", String.class),
+            new ObjectStreamField("fileHashes", Map.class),
+            new ObjectStreamField("snapshot", CommitSnapshot.class)
+    };
+
+    private String id;
+    private String message;
+    private LocalDateTime timestamp;
+    private String previousCommitId;
+    private CommitSnapshot snapshot;
 
     public Commit(String id, String message, String previousCommitId, Map<String, String> fileHashes) {
-    this.id = id;
+        this(id, message, previousCommitId, CommitSnapshot.fromMetadataMap(fileHashes));
+    }
+
+    public Commit(String id, String message, String previousCommitId, CommitSnapshot snapshot) {
+        this.id = id;
         this.message = message;
         this.timestamp = LocalDateTime.now();
         this.previousCommitId = previousCommitId;
-        this.fileHashes = new ConcurrentHashMap<>(fileHashes);
+        this.snapshot = snapshot;
     }
 
     public String getId() {
@@ -51,18 +63,50 @@ public class Commit implements Serializable {
         return previousCommitId;
     }
 
+    /**
+     * 커밋의 파일 메타데이터 (경로 순 정렬, 컬럼 형식)
+     */
+    public CommitSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     /**
      * 커밋의 파일 메타데이터를 가져오는 메서드
-     * @return key:경로, value:파일크기,수정시간,해시값
+     * @return key:경로, value:파일크기,수정시간,해시값 (snapshot 위의 읽기 전용 뷰)
      */
     public Map<String, String> getFileMetadataMap() {
-        return Collections.unmodifiableMap(fileHashes);
+        return snapshot.asMetadataMap();
     }
 
     public LocalDateTime getTimestamp() {
         return timestamp;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("message", message);
+        fields.put("timestamp", timestamp);
+        fields.put("previousCommitId", previousCommitId);
+        fields.put("fileHashes", null); // 예전 형식은 읽기만 한다 (위 설명 참고)
+        fields.put("snapshot", snapshot);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = (String) fields.get("id", null);
+        message = (String) fields.get("message", null);
+        timestamp = (LocalDateTime) fields.get("timestamp", null);
+        previousCommitId = (String) fields.get("previousCommitId", "");
+        snapshot = (CommitSnapshot) fields.get("snapshot", null);
+        if (snapshot == null) {
+            Map<String, String> fileHashes = (Map<String, String>) fields.get("fileHashes", null);
+            snapshot = fileHashes == null ? CommitSnapshot.EMPTY : CommitSnapshot.fromMetadataMap(fileHashes);
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("commit.Commit: %s\nDate: %s\nMessage: %s\nPrevious commit.Commit: %s",
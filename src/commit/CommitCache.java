@@ -0,0 +1,59 @@
+package commit;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CommitCache {
+
+    /**
+     * 프로세스 전체에서 공유하는 커밋 캐시. key : 커밋 ID
+     * 커밋 파일은 한 번 만들어지면 바뀌지 않으므로 무효화는 필요 없고, 크기만 제한한다.
+     * 크기는 커밋이 들고 있는 스냅샷의 대략적인 힙 사용량 합계로 재고,
+     * 넘치면 가장 오래 안 쓴 커밋부터 내보낸다. (LRU)
+     */
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Commit> commits = new LinkedHashMap<>(16, 0.75f, true); // 접근 순서
+    private long totalBytes = 0;
+
+    public CommitCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized Commit get(String commitId) {
+        return commits.get(commitId);
+    }
+
+    public synchronized void put(Commit commit) {
+        long weight = weightOf(commit);
+        if (weight > maxBytes) {
+            return; // 캐시 전체보다 큰 커밋은 들고 있지 않음
+        }
+        Commit previous = commits.put(commit.getId(), commit);
+        if (previous != null) {
+            totalBytes -= weightOf(previous);
+        }
+        totalBytes += weight;
+
+        Iterator<Map.Entry<String, Commit>> iterator = commits.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Commit eldest = iterator.next().getValue();
+            iterator.remove();
+            totalBytes -= weightOf(eldest);
+        }
+    }
+
+    public synchronized void clear() {
+        commits.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized int size() {
+        return commits.size();
+    }
+
+    private static long weightOf(Commit commit) {
+        return commit.getSnapshot().estimatedBytes() + commit.getMessage().length() * 2L + 256;
+    }
+}
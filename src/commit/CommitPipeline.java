@@ -0,0 +1,260 @@
+package commit;
+
+import util.FileStat;
+import util.FileUtil;
+import util.HashUtil;
+import util.StreamingIO;
+import util.WorkTreeFilter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CommitPipeline {
+
+    /**
+     * 단계별로 나눈 커밋 (commit.strategy=v5). 단계 사이는 크기 제한이 있는 큐로 잇고, 단계마다 스레드 수를 따로 둔다.
+     * 1. walk    : 호출한 스레드가 디렉토리를 돌면서 찾은 파일을 바로 stat 단계로 넘긴다 (전체 목록을 기다리지 않음)
+     * 2. stat    : 크기/수정시간/inode 를 읽어서 HEAD 와 같으면 (StatCache 로 확인된 것 포함, 또는 이름만 바뀐 파일이면)
+     *              HEAD 의 해시로 바로 collect.
+     *              바뀐 파일은 LARGE_FILE_SIZE 이상이면 큰 파일 줄로, 아니면 hash 단계로
+     * 3. hash    : INLINE_LIMIT 미만은 메모리로 읽어서 해시만 하고 쓰기는 write 단계에 넘긴다.
+     *              그보다 크면 storeObject 로 복사하면서 해시 (한 번만 읽음)
+     *    large   : 큰 파일 전용 스레드가 storeObject. 큰 파일 몇 개가 작은 파일들을 막지 않는다
+     * 4. write   : 이미 있는 오브젝트는 건너뛰고, 없으면 임시파일 + rename 으로 저장 (durable 모드면 batch 로)
+     * 5. collect : 스레드 하나가 끝난 항목을 SpillSorter 에 넣고, 다 끝나면 merge 해서 스냅샷을 만든다
+     * 파일별 오류는 지금까지처럼 경고만 하고 건너뛰고, 그 밖의 오류는 남은 항목을 비우고 끝낸 다음 던진다.
+     */
+
+    static final long INLINE_LIMIT = 256 * 1024;
+    static final long LARGE_FILE_SIZE = 8L * 1024 * 1024;
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int WRITE_QUEUE_CAPACITY = 256; // 메모리에 들고 있는 파일 내용은 최대 256 x INLINE_LIMIT
+    private static final Object END = new Object(); // 워커 종료 신호
+
+    private final Commit headCommit;
+    private final WorkTreeFilter filter;
+    private final int threadCount;
+    private final int sortBufferSize;
+
+    private StatCache statCache = StatCache.EMPTY;
+    private final AtomicBoolean changed = new AtomicBoolean(false);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private record Changed(String path, Path file, FileStat stat) {
+    }
+
+    private record Loaded(String path, FileStat stat, String hash, byte[] content) {
+    }
+
+    private record Done(String path, FileStat stat, byte[] hash) {
+    }
+
+    private interface Handler<T> {
+        void handle(T item) throws IOException, InterruptedException;
+    }
+
+    /**
+     * @param threadCount hash 단계와 큰 파일 줄이 나눠 쓰는 스레드 수 (V4 처럼 8 개 중 3 개가 큰 파일).
+     *                    stat, write 단계는 그 1/4 씩
+     */
+    public CommitPipeline(Commit headCommit, WorkTreeFilter filter, int threadCount, int sortBufferSize) {
+        this.headCommit = headCommit;
+        this.filter = filter;
+        this.threadCount = threadCount;
+        this.sortBufferSize = sortBufferSize;
+    }
+
+    public CommitSnapshot run() throws IOException {
+        CommitSnapshot headSnapshot = headCommit == null ? CommitSnapshot.EMPTY : headCommit.getSnapshot();
+        statCache = StatCache.load(headCommit);
+        int largeThreadCount = Math.max(1, threadCount * 3 / 8);
+        int hashThreadCount = Math.max(1, threadCount - largeThreadCount);
+        int sideThreadCount = Math.max(1, threadCount / 4);
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        try (SpillSorter sorter = new SpillSorter(sortBufferSize)) {
+            // 1. 뒤 단계부터 시작 (앞 단계가 넣을 곳이 먼저 있어야 함)
+            Stage<Done> collect = new Stage<>(executor, 1, QUEUE_CAPACITY, done ->
+                    sorter.add(done.path(), done.stat().size(), done.stat().modifiedTime(), done.hash(),
+                            done.stat().device(), done.stat().inode()));
+            Stage<Loaded> write = new Stage<>(executor, sideThreadCount, WRITE_QUEUE_CAPACITY,
+                    loaded -> write(loaded, collect));
+            Stage<Changed> large = new Stage<>(executor, largeThreadCount, QUEUE_CAPACITY,
+                    item -> store(item, collect));
+            Stage<Changed> hash = new Stage<>(executor, hashThreadCount, QUEUE_CAPACITY,
+                    item -> hash(item, write, collect));
+            Stage<Path> stat = new Stage<>(executor, sideThreadCount, QUEUE_CAPACITY,
+                    file -> stat(file, headSnapshot, hash, large, collect));
+
+            // 2. walk. 실패해도 단계들은 끝까지 닫아야 하므로 예외는 잠깐 들고 있는다
+            IOException walkFailure = null;
+            try {
+                filter.walk(file -> {
+                    if (failure.get() != null) {
+                        throw new IOException("commit aborted");
+                    }
+                    try {
+                        stat.put(file);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("commit interrupted");
+                    }
+                });
+            } catch (IOException e) {
+                walkFailure = e;
+            }
+
+            // 3. 앞 단계부터 닫는다 (앞 단계의 워커가 다 끝나야 다음 단계에 더 들어올 것이 없음)
+            stat.finish();
+            hash.finish();
+            large.finish();
+            write.finish();
+            collect.finish();
+            Throwable cause = failure.get();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            } else if (cause != null) {
+                throw new IOException("Error processing files", cause);
+            } else if (walkFailure != null) {
+                throw walkFailure;
+            }
+
+            // 4. 범위 밖의 HEAD 항목을 가져가고 정렬된 항목들로 스냅샷 만들기
+            StreamingCommitter.carryOverOutOfScope(headSnapshot, filter, sorter);
+            return sorter.build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("commit interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Error processing files", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // 새 파일이나 내용이 바뀐 파일이 있으면 true. 지워지기만 한 파일은 status, ModifyDetector 처럼 변경으로 보지 않는다
+    public boolean hasChanges() {
+        return changed.get();
+    }
+
+    private void stat(Path file, CommitSnapshot headSnapshot, Stage<Changed> hash, Stage<Changed> large, Stage<Done> collect)
+            throws InterruptedException {
+        String normalizedPath = FileUtil.getRootPath().relativize(file).normalize().toString();
+        FileStat stat;
+        try {
+            stat = FileUtil.stat(file);
+        } catch (IOException e) {
+            System.err.println("Error processing file: " + file);
+            return;
+        }
+
+        int headIndex = headSnapshot.indexOf(normalizedPath);
+        if (headIndex >= 0 && statCache.isUnchanged(headSnapshot, headIndex, normalizedPath, stat.size(), stat.modifiedTime())) {
+            collect.put(new Done(normalizedPath, stat, headSnapshot.getHashBytes(headIndex))); // 안 바뀐 파일은 다시 읽지 않는다
+            return;
+        }
+        changed.set(true);
+        int movedIndex = headSnapshot.indexOfFile(stat);
+        if (movedIndex >= 0) {
+            collect.put(new Done(normalizedPath, stat, headSnapshot.getHashBytes(movedIndex))); // 이름만 바뀐 파일
+        } else if (stat.size() >= LARGE_FILE_SIZE) {
+            large.put(new Changed(normalizedPath, file, stat));
+        } else {
+            hash.put(new Changed(normalizedPath, file, stat));
+        }
+    }
+
+    private void hash(Changed item, Stage<Loaded> write, Stage<Done> collect) throws InterruptedException {
+        if (item.stat().size() >= INLINE_LIMIT) {
+            store(item, collect);
+            return;
+        }
+        byte[] content;
+        try {
+            content = Files.readAllBytes(item.file());
+        } catch (IOException e) {
+            System.err.println("Error processing file: " + item.file());
+            return;
+        }
+        write.put(new Loaded(item.path(), item.stat(), StreamingIO.hash(content), content));
+    }
+
+    private void store(Changed item, Stage<Done> collect) throws InterruptedException {
+        String hash;
+        try {
+            hash = FileUtil.storeObject(item.file());
+        } catch (IOException e) {
+            System.err.println("Error processing file: " + item.file());
+            return;
+        }
+        collect.put(new Done(item.path(), item.stat(), HashUtil.hexToBytes(hash)));
+    }
+
+    private void write(Loaded loaded, Stage<Done> collect) throws InterruptedException {
+        try {
+            FileUtil.saveObject(loaded.hash(), loaded.content()); // 이미 있는 오브젝트면 건너뜀
+        } catch (IOException e) {
+            System.err.println("Error processing file: " + loaded.path());
+            return;
+        }
+        collect.put(new Done(loaded.path(), loaded.stat(), HashUtil.hexToBytes(loaded.hash())));
+    }
+
+    // 큐 하나와 그 큐를 비우는 워커들
+    private final class Stage<T> {
+        private final BlockingQueue<Object> queue;
+        private final List<Future<?>> workers = new ArrayList<>();
+
+        Stage(ExecutorService executor, int workerCount, int capacity, Handler<T> handler) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(executor.submit(() -> work(handler)));
+            }
+        }
+
+        void put(T item) throws InterruptedException {
+            queue.put(item);
+        }
+
+        // 워커마다 END 를 넣고 다 끝날 때까지 대기
+        void finish() throws InterruptedException, ExecutionException {
+            for (int i = 0; i < workers.size(); i++) {
+                queue.put(END);
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void work(Handler<T> handler) {
+            try {
+                while (true) {
+                    Object item = queue.take();
+                    if (item == END) {
+                        return;
+                    }
+                    if (failure.get() != null) {
+                        continue; // 다른 곳이 실패했으면 앞 단계가 막히지 않도록 큐만 비운다
+                    }
+                    try {
+                        handler.handle((T) item);
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package commit;
 
+import history.HistoryIndex;
+import util.FileStat;
 import util.FileUtil;
 import util.HashUtil;
+import util.RepositoryLock;
+import util.SfvConfig;
+import util.Tuning;
+import util.WorkTreeFilter;
 
 import java.io.*;
 import java.nio.file.FileSystemException;
@@ -15,33 +21,137 @@ import java.util.stream.Collectors;
 
 public class CommitService {
 
+    // 읽은 커밋을 들고 있는 프로세스 전체 캐시. 최대 힙의 1/8 까지 (데몬에서는 명령 사이에도 유지됨)
+    private static final CommitCache commitCache = new CommitCache(Runtime.getRuntime().maxMemory() / 8);
+
+    // 기본값 (sfv tune 을 안 했을 때)
+    public static final Tuning DEFAULT_TUNING = new Tuning("v5", 8, 0);
+
     public void commit(String message) throws IOException, NoSuchAlgorithmException {
+        commit(message, List.of(), false);
+    }
+
+    /**
+     * @param scopePaths 비어있지 않으면 그 경로 아래만 검사/커밋하고, 나머지는 HEAD 의 항목을 그대로 가져간다
+     * @param streaming  true 거나 commit.streaming 설정이 켜져 있으면 StreamingCommitter 로 커밋한다
+     */
+    @SuppressWarnings("try")
+    public void commit(String message, List<String> scopePaths, boolean streaming) throws IOException, NoSuchAlgorithmException {
         FileUtil.validateSfvRepository();
+        // 해시 / 오브젝트 저장 동안은 writer 만 잡는다 (다른 commit, checkout 만 막고 status, log 는 그대로 돈다)
+        try (RepositoryLock writerLock = RepositoryLock.writer()) {
+            SfvConfig config = SfvConfig.load();
+            boolean durable = config.getBoolean(SfvConfig.CORE_DURABLE, false);
+            WorkTreeFilter filter = WorkTreeFilter.load().withScopes(scopePaths);
+
+            // HEAD 는 한 번만 읽어서 넘긴다 (writer 를 잡고 있으므로 끝날 때까지 안 바뀜)
+            String head = FileUtil.getHEADValue();
+            Commit headCommit = head.isEmpty() ? null : loadCommitFromCommitDirectory(head);
+
+            // durable 모드면 오브젝트는 임시파일로만 써두고 마지막에 한꺼번에 fsync + rename
+            if (durable) {
+                FileUtil.beginDurableBatch();
+            }
+            CommitSnapshot snapshot;
+            try {
+                if (streaming || config.getBoolean(SfvConfig.COMMIT_STREAMING, false)) {
+                    snapshot = collectSnapshotStreaming(headCommit, filter,
+                            config.getInt(SfvConfig.COMMIT_SORT_BUFFER, SpillSorter.DEFAULT_BUFFER_SIZE));
+                } else {
+                    Tuning tuning = Tuning.load(config, SfvConfig.COMMIT, DEFAULT_TUNING);
+                    if (tuning.strategy().equals("v5")) {
+                        snapshot = collectSnapshotPipelined(headCommit, filter, tuning,
+                                config.getInt(SfvConfig.COMMIT_SORT_BUFFER, SpillSorter.DEFAULT_BUFFER_SIZE));
+                    } else {
+                        snapshot = collectSnapshot(headCommit, filter, tuning);
+                    }
+                }
+            } finally {
+                if (durable) {
+                    FileUtil.finishDurableBatch();
+                }
+            }
+
+            // 커밋 파일, 색인, HEAD 를 쓰는 동안만 읽는 명령을 막는다
+            Commit commit = new Commit(generateCommitId(message), message, head, snapshot);
+            try (RepositoryLock publishLock = writerLock.publish()) {
+                saveCommitToCommitDirectory(commit, durable);
+                // 경로별 히스토리 색인 (이전 커밋 대비 바뀐 경로의 Bloom filter)
+                HistoryIndex.write(commit, headCommit == null ? CommitSnapshot.EMPTY : headCommit.getSnapshot(), durable);
+
+                // HEAD 업데이트 (오브젝트, 커밋 파일이 모두 반영된 다음에)
+                FileUtil.updateHEADValue(commit.getId(), durable);
+            }
+            System.out.println("[commit] commited " + commit.getId().substring(0, 7) + " (" + message + ")");
+        }
+    }
 
-        // 1. 현재 작업 디렉토리의 모든 파일 목록 가져오기
-        Set<Path> currentFiles = Files.walk(FileUtil.getRootPath())
-                .filter(path -> !path.startsWith(FileUtil.getDotSfvPath()))
-                .filter(path -> !path.toString().contains("/."))
-                .filter(path -> !path.toString().contains("/out"))
-                .filter(Files::isRegularFile)
-                .collect(Collectors.toSet());
+    private static CommitSnapshot collectSnapshot(Commit headCommit, WorkTreeFilter filter, Tuning tuning) throws IOException {
+        // 1. 현재 작업 디렉토리의 모든 파일 목록 가져오기 (sparse 패턴, 경로 범위가 있으면 그 안의 파일만)
+        Set<Path> currentFiles = new HashSet<>(filter.walk());
 
         // 2. 변경된 파일 찾기
-        List<Path> modifiedFiles = ModifyDetector.findModifiedFiles();
+        List<Path> modifiedFiles = ModifyDetector.findModifiedFiles(headCommit, filter);
         if (modifiedFiles.isEmpty()) {
             throw new FileSystemException("Nothing to commit.");
         }
 
+        // 3. 현재 존재하는 파일의 메타데이터 계산 및 오브젝트 저장
+        CommitSnapshot headSnapshot = headCommit == null ? CommitSnapshot.EMPTY : headCommit.getSnapshot();
+        Map<String, String> newFileMetadata = getFileMetadata(currentFiles, headSnapshot, StatCache.load(headCommit), tuning);
+
+        // 범위 밖의 파일은 검사하지 않았으므로 HEAD 의 항목을 그대로 가져간다
+        if (filter.isRestricted()) {
+            headSnapshot.forEach((index, path) -> {
+                if (!filter.includes(path)) {
+                    newFileMetadata.put(path, headSnapshot.getSize(index) + "," + headSnapshot.getModifiedTime(index)
+                            + "," + headSnapshot.getHash(index)
+                            + "," + headSnapshot.getDevice(index) + "," + headSnapshot.getInode(index));
+                }
+            });
+        }
+        return CommitSnapshot.fromMetadataMap(newFileMetadata);
+    }
 
-        // 3. 커밋 객체 생성 및 저장 (현재 존재하는 파일만 포함)
-        Map<String, String> newFileMetadata = getFileMetadataV4(currentFiles); // TODO
+    // 파일 수에 비례하는 목록/Map 없이, walk -> 해시 -> 정렬된 run 파일 -> merge 로 스냅샷을 만든다
+    private static CommitSnapshot collectSnapshotStreaming(Commit headCommit, WorkTreeFilter filter, int sortBufferSize) throws IOException {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        StreamingCommitter committer = new StreamingCommitter(headCommit, filter, threadCount, sortBufferSize);
+        CommitSnapshot snapshot = committer.run();
+        if (!committer.hasChanges()) {
+            throw new FileSystemException("Nothing to commit.");
+        }
+        return snapshot;
+    }
 
-        Commit commit = new Commit(generateCommitId(message), message, FileUtil.getHEADValue(), newFileMetadata);
-        saveCommitToCommitDirectory(commit);
+    // walk -> stat -> 해시 -> 오브젝트 쓰기 -> 정렬을 단계별 큐로 이어서 겹쳐 돌린다 (변경 감지도 같은 walk 에서)
+    public static CommitSnapshot collectSnapshotPipelined(Commit headCommit, WorkTreeFilter filter, Tuning tuning, int sortBufferSize) throws IOException {
+        int threadCount = tuning.threads() > 0 ? tuning.threads() : DEFAULT_TUNING.threads();
+        CommitPipeline pipeline = new CommitPipeline(headCommit, filter, threadCount, sortBufferSize);
+        CommitSnapshot snapshot = pipeline.run();
+        if (!pipeline.hasChanges()) {
+            throw new FileSystemException("Nothing to commit.");
+        }
+        return snapshot;
+    }
+
+    /**
+     * 파일들의 메타데이터 계산 + 오브젝트 저장. 방식은 .sfv/config 의 commit.strategy (v2, v3, v4) 와 commit.threads
+     * (V1 은 오브젝트를 저장하지 않으므로 고를 수 없음, V5 는 파일 목록 대신 walk 부터 하므로 collectSnapshotPipelined)
+     * @return key:경로, value:"크기,수정시간,해시,장치,inode"
+     */
+    public static Map<String, String> getFileMetadata(Set<Path> currentFiles, CommitSnapshot headSnapshot, Tuning tuning) throws IOException {
+        return getFileMetadata(currentFiles, headSnapshot, StatCache.EMPTY, tuning);
+    }
 
-        // 4. HEAD 업데이트
-        FileUtil.updateHEADValue(commit.getId());
-        System.out.println("[commit] commited " + commit.getId().substring(0, 7) + " (" + message + ")");
+    // statCache : 수정시간만 바뀐 것으로 확인된 파일도 HEAD 의 해시를 그대로 쓴다
+    public static Map<String, String> getFileMetadata(Set<Path> currentFiles, CommitSnapshot headSnapshot, StatCache statCache, Tuning tuning) throws IOException {
+        int threadCount = tuning.threads() > 0 ? tuning.threads() : DEFAULT_TUNING.threads();
+        return switch (tuning.strategy()) {
+            case "v2" -> getFileMetadataV2(currentFiles, headSnapshot, statCache);
+            case "v3" -> getFileMetadataV3(currentFiles, headSnapshot, statCache, threadCount);
+            default -> getFileMetadataV4(currentFiles, headSnapshot, statCache, threadCount); // v4, v5
+        };
     }
 
     // V1 : 싱글스레드
@@ -59,21 +169,9 @@ public class CommitService {
     }
 
     // V2 : parallelStream
-    private static Map<String, String> getFileMetadataV2(Set<Path> currentFiles) throws IOException, NoSuchAlgorithmException {
+    private static Map<String, String> getFileMetadataV2(Set<Path> currentFiles, CommitSnapshot headSnapshot, StatCache statCache) {
         Map<String, String> newFileMetadata = new ConcurrentHashMap<>();
-        currentFiles.parallelStream().forEach(file -> {
-            try {
-                String normalizedPath = FileUtil.getRootPath().relativize(file).normalize().toString();
-                long fileSize = FileUtil.getFileSize(file);
-                long lastModifiedTime = FileUtil.getLastModifiedTime(file);
-                String hash = FileUtil.calculateFileHash(file);
-                FileUtil.saveObject(hash, Files.readAllBytes(file));
-                String fileInfo = fileSize + "," + lastModifiedTime + "," + hash;
-                newFileMetadata.put(normalizedPath, fileInfo);
-            } catch (IOException | NoSuchAlgorithmException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        currentFiles.parallelStream().forEach(file -> processFile(file, headSnapshot, statCache, newFileMetadata));
 
 
         return newFileMetadata;
@@ -82,11 +180,10 @@ public class CommitService {
 
 
     // V3 : 청크로 나눠서 계산
-    private static Map<String, String> getFileMetadataV3(Set<Path> currentFiles) throws IOException {
+    private static Map<String, String> getFileMetadataV3(Set<Path> currentFiles, CommitSnapshot headSnapshot, StatCache statCache, int threadCount) throws IOException {
         Map<String, String> newFileMetadata = new ConcurrentHashMap<>();
 
         // 1. 스레드 풀 설정
-        int threadCount = 32; // TODO
         ExecutorService executor = Executors.newFixedThreadPool(threadCount);
         List<Future<?>> futures = new ArrayList<>();
 
@@ -105,17 +202,7 @@ public class CommitService {
 
             Future<?> future = executor.submit(() -> {
                 for (Path file : chunk) {
-                    try {
-                        String normalizedPath = FileUtil.getRootPath().relativize(file).normalize().toString();
-                        long fileSize = FileUtil.getFileSize(file);
-                        long lastModifiedTime = FileUtil.getLastModifiedTime(file);
-                        String hash = FileUtil.calculateFileHash(file);
-                        FileUtil.saveObject(hash, Files.readAllBytes(file));
-                        String fileInfo = fileSize + "," + lastModifiedTime + "," + hash;
-                        newFileMetadata.put(normalizedPath, fileInfo);
-                    } catch (IOException | NoSuchAlgorithmException e) {
-                        throw new RuntimeException(e);
-                    }
+                    processFile(file, headSnapshot, statCache, newFileMetadata);
                 }
             });
             futures.add(future);
@@ -144,8 +231,12 @@ public class CommitService {
 
 
     // V4  메서드 : 큰 파일을 따로 떼서 별도의 스레드로 처리
-    private static Map<String, String> getFileMetadataV4(Set<Path> currentFiles) throws IOException {
+    // HEAD 와 같은 파일 (같은 경로, 또는 이름만 바뀐 같은 inode) 은 읽지 않고 HEAD 의 해시를 쓴다
+    private static Map<String, String> getFileMetadataV4(Set<Path> currentFiles, CommitSnapshot headSnapshot, StatCache statCache, int threadCount) throws IOException {
         Map<String, String> newFileMetadata = new ConcurrentHashMap<>();
+        if (currentFiles.isEmpty()) {
+            return newFileMetadata;
+        }
         
         // 1. 먼저 모든 파일의 크기를 한 번에 수집
         Map<Path, Long> fileSizeCache = currentFiles.parallelStream()
@@ -166,9 +257,8 @@ public class CommitService {
             .map(Map.Entry::getKey)
             .toList();
 
-        int threadCount = 8; // TODO 일반 파일에 할당할 스레드 개수
-        int largeFileThreadCount = 3; //TODO 큰 파일에 할당할 스레드 개수
-        int normalThreadCount = threadCount - largeFileThreadCount;
+        int largeFileThreadCount = Math.max(1, threadCount * 3 / 8); // 큰 파일에 할당할 스레드 개수 (8 개 중 3 개)
+        int normalThreadCount = Math.max(1, threadCount - largeFileThreadCount);
         
         ExecutorService largeFileExecutor = Executors.newFixedThreadPool(largeFileThreadCount);
         ExecutorService normalFileExecutor = Executors.newFixedThreadPool(normalThreadCount);
@@ -184,7 +274,7 @@ public class CommitService {
                 Path file = sortedFiles.get(i);
                 largeFileFutures.add(CompletableFuture.runAsync(() -> {
                     try {
-                        processFile(file, newFileMetadata);
+                        processFile(file, headSnapshot, statCache, newFileMetadata);
                     } catch (Exception e) {
                         throw new RuntimeException(e);
                     }
@@ -196,7 +286,7 @@ public class CommitService {
                 Path file = sortedFiles.get(i);
                 normalFileFutures.add(CompletableFuture.runAsync(() -> {
                     try {
-                        processFile(file, newFileMetadata);
+                        processFile(file, headSnapshot, statCache, newFileMetadata);
                     } catch (Exception e) {
                         throw new RuntimeException(e);
                     }
@@ -227,42 +317,63 @@ public class CommitService {
         return newFileMetadata;
     }
 
-    private static void processFile(Path file, Map<String, String> newFileMetadata) {
+    private static void processFile(Path file, CommitSnapshot headSnapshot, StatCache statCache, Map<String, String> newFileMetadata) {
         try {
             String normalizedPath = FileUtil.getRootPath().relativize(file).normalize().toString();
-            long fileSize = FileUtil.getFileSize(file);
-            long lastModifiedTime = FileUtil.getLastModifiedTime(file);
-            String hash = FileUtil.calculateFileHash(file);
-            FileUtil.saveObject(hash, Files.readAllBytes(file));
-            String fileInfo = fileSize + "," + lastModifiedTime + "," + hash;
+            FileStat stat = FileUtil.stat(file);
+            String hash;
+            int headIndex = headSnapshot.indexOf(normalizedPath);
+            if (headIndex >= 0 && statCache.isUnchanged(headSnapshot, headIndex, normalizedPath, stat.size(), stat.modifiedTime())) {
+                hash = headSnapshot.getHash(headIndex);
+            } else if ((headIndex = headSnapshot.indexOfFile(stat)) >= 0) {
+                hash = headSnapshot.getHash(headIndex); // 이름만 바뀐 파일
+            } else {
+                hash = FileUtil.storeObject(file); // 해시 계산과 오브젝트 저장을 한 번 읽으면서
+            }
+            String fileInfo = stat.size() + "," + stat.modifiedTime() + "," + hash + "," + stat.device() + "," + stat.inode();
             newFileMetadata.put(normalizedPath, fileInfo);
-        } catch (IOException | NoSuchAlgorithmException e) {
+        } catch (IOException e) {
             System.err.println("Error processing file: " + file);
         }
     }
 
 
     public static Commit loadCommitFromCommitDirectory(String commitId) throws IOException {
-        try {
-            Path commitPath = FileUtil.getCommitPath(commitId);
-            if (!Files.exists(commitPath)) {
-                throw new IOException("Commit file not exists: " + commitPath);
-            }
-            ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(commitPath));
-            Commit commit = (Commit) ois.readObject();
-            ois.close();
-            return commit;
+        Commit cached = commitCache.get(commitId);
+        if (cached != null) {
+            return cached;
+        }
+        Commit commit = loadCommitUncached(commitId);
+        commitCache.put(commit);
+        return commit;
+    }
+
+    // gc, fsck 처럼 모든 커밋을 한 번씩만 훑는 경우 캐시를 밀어내지 않도록 직접 읽는다
+    public static Commit loadCommitUncached(String commitId) throws IOException {
+        return readCommitFile(FileUtil.getCommitPath(commitId));
+    }
+
+    // 커밋 파일 하나를 읽는다. (다른 리포지토리의 커밋 파일도)
+    public static Commit readCommitFile(Path commitPath) throws IOException {
+        if (!Files.exists(commitPath)) {
+            throw new IOException("Commit file not exists: " + commitPath);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(commitPath)))) {
+            return (Commit) ois.readObject();
         } catch (ClassNotFoundException e) {
-            throw new IOException("Failed to load commit: " + commitId, e);
+            throw new IOException("Failed to load commit: " + commitPath.getFileName(), e);
         }
     }
 
-    private static void saveCommitToCommitDirectory(Commit commit) {
+    private static void saveCommitToCommitDirectory(Commit commit, boolean durable) {
         try {
             Path commitPath = FileUtil.getCommitPath(commit.getId());
-            ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(commitPath));
-            oos.writeObject(commit);
-            oos.close();
+            // 직렬화 결과를 메모리에 모으지 않고 임시파일에 바로 쓴다
+            FileUtil.writeAtomically(commitPath, durable, out -> {
+                ObjectOutputStream oos = new ObjectOutputStream(out);
+                oos.writeObject(commit);
+                oos.flush();
+            });
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -0,0 +1,489 @@
+package commit;
+
+import util.FileStat;
+import util.HashUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+
+public class CommitSnapshot implements Serializable {
+
+    /**
+     * 커밋의 파일 메타데이터를 메모리에 적게 들고 있기 위한 컬럼 형식 구조.
+     * 경로 순으로 정렬되어 있고, i 번째 파일의 정보는 각 배열의 i 번째 칸에 있다.
+     *
+     * paths         : UTF-8 앞부분 공유 압축 (앞 경로와 같은 앞부분 길이 + 나머지 바이트)
+     *                 BLOCK_SIZE 개마다 한 번씩 전체 경로를 저장해서 그 지점부터 바로 풀 수 있게 함
+     * sizes         : long[] 파일 크기
+     * modifiedTimes : long[] 수정시간 (ms)
+     * hashes        : byte[] SHA-1 20 바이트씩
+     * devices       : long[] 장치 번호 } fileKey. 이름이 바뀐 (mv) 파일을 다시 읽지 않고 알아보기 위함
+     * inodes        : long[] inode    } 이 기능 전에 만든 커밋, fileKey 가 없는 파일시스템이면 null
+     *
+     * 파일마다 Map.Entry, 문자열 2개 ("경로", "크기,수정시간,해시") 를 들고 있던 것에 비해
+     * 파일당 수십 바이트 정도만 쓴다. 값을 꺼낼 때 split(",") 도 필요 없음.
+     */
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int BLOCK_SIZE = 16;
+    public static final int HASH_LENGTH = 20;
+
+    public static final CommitSnapshot EMPTY = new Builder().build();
+
+    private final int size;
+    private final byte[] pathData;
+    private final int[] blockOffsets;
+    private final long[] sizes;
+    private final long[] modifiedTimes;
+    private final byte[] hashes;
+    private final long[] devices;
+    private final long[] inodes;
+
+    // fileKey -> 위치. 처음 찾을 때 만든다 (직렬화하지 않음)
+    private transient volatile Map<FileKey, Integer> fileKeyIndex;
+
+    private CommitSnapshot(int size, byte[] pathData, int[] blockOffsets, long[] sizes, long[] modifiedTimes, byte[] hashes,
+                           long[] devices, long[] inodes) {
+        this.size = size;
+        this.pathData = pathData;
+        this.blockOffsets = blockOffsets;
+        this.sizes = sizes;
+        this.modifiedTimes = modifiedTimes;
+        this.hashes = hashes;
+        this.devices = devices;
+        this.inodes = inodes;
+    }
+
+    // 기존 형식 (key:경로, value:"크기,수정시간,해시[,장치,inode]") 에서 변환
+    public static CommitSnapshot fromMetadataMap(Map<String, String> fileMetadataMap) {
+        List<String> paths = new ArrayList<>(fileMetadataMap.keySet());
+        Collections.sort(paths);
+        Builder builder = new Builder(paths.size());
+        for (String path : paths) {
+            String[] parts = fileMetadataMap.get(path).split(",");
+            if (parts.length >= 5) {
+                builder.add(path, Long.parseLong(parts[0]), Long.parseLong(parts[1]), HashUtil.hexToBytes(parts[2]), 0,
+                        Long.parseLong(parts[3]), Long.parseLong(parts[4]));
+            } else {
+                builder.add(path, Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+            }
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    public long getModifiedTime(int index) {
+        return modifiedTimes[index];
+    }
+
+    public String getHash(int index) {
+        return HashUtil.bytesToHex(hashes, index * HASH_LENGTH, HASH_LENGTH);
+    }
+
+    public boolean hasFileKeys() {
+        return inodes != null;
+    }
+
+    // fileKey 가 없으면 0
+    public long getDevice(int index) {
+        return devices == null ? 0 : devices[index];
+    }
+
+    public long getInode(int index) {
+        return inodes == null ? 0 : inodes[index];
+    }
+
+    /**
+     * 같은 파일 (장치, inode, 크기, 수정시간이 모두 같음) 인 항목의 위치. 없으면 -1
+     * 경로가 바뀐 파일 (mv) 의 해시를 파일을 읽지 않고 가져오기 위해 사용. 경로는 보지 않는다
+     */
+    public int indexOfFile(FileStat stat) {
+        if (inodes == null || !stat.hasFileKey()) {
+            return -1;
+        }
+        Integer index = fileKeyIndex().get(new FileKey(stat.device(), stat.inode()));
+        if (index == null || sizes[index] != stat.size() || modifiedTimes[index] != stat.modifiedTime()) {
+            return -1;
+        }
+        return index;
+    }
+
+    private Map<FileKey, Integer> fileKeyIndex() {
+        Map<FileKey, Integer> index = fileKeyIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = fileKeyIndex;
+                if (index == null) {
+                    index = new HashMap<>(size * 2);
+                    for (int i = 0; i < size; i++) {
+                        if (inodes[i] != 0) {
+                            index.putIfAbsent(new FileKey(devices[i], inodes[i]), i); // 하드링크면 첫 번째
+                        }
+                    }
+                    fileKeyIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private record FileKey(long device, long inode) {
+    }
+
+    public byte[] getHashBytes(int index) {
+        return Arrays.copyOfRange(hashes, index * HASH_LENGTH, (index + 1) * HASH_LENGTH);
+    }
+
+    public boolean hashEquals(int index, CommitSnapshot other, int otherIndex) {
+        return Arrays.equals(hashes, index * HASH_LENGTH, (index + 1) * HASH_LENGTH,
+                other.hashes, otherIndex * HASH_LENGTH, (otherIndex + 1) * HASH_LENGTH);
+    }
+
+    public boolean hashEquals(int index, String hexHash) {
+        byte[] hash = HashUtil.hexToBytes(hexHash);
+        return Arrays.equals(hashes, index * HASH_LENGTH, (index + 1) * HASH_LENGTH, hash, 0, HASH_LENGTH);
+    }
+
+    public String getPath(int index) {
+        Objects.checkIndex(index, size);
+        Cursor cursor = new Cursor(index);
+        return cursor.next();
+    }
+
+    // 경로로 찾기. 없으면 -1
+    public int indexOf(String path) {
+        int index = lowerBound(path);
+        if (index < size && getPath(index).equals(path)) {
+            return index;
+        }
+        return -1;
+    }
+
+    // path 보다 크거나 같은 첫 번째 경로의 위치. (디렉토리 범위 탐색용)
+    public int lowerBound(String path) {
+        if (size == 0) {
+            return 0;
+        }
+        // 1. 블록 첫 경로들로 이진 탐색
+        int low = 0;
+        int high = blockOffsets.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blockHead(mid).compareTo(path) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // 2. 블록 안에서 순차 탐색
+        int start = low * BLOCK_SIZE;
+        int end = Math.min(size, start + BLOCK_SIZE);
+        Cursor cursor = new Cursor(start);
+        for (int index = start; index < end; index++) {
+            if (cursor.next().compareTo(path) >= 0) {
+                return index;
+            }
+        }
+        return end;
+    }
+
+    public interface EntryVisitor {
+        void visit(int index, String path);
+    }
+
+    public void forEach(EntryVisitor visitor) {
+        forEach(0, size, visitor);
+    }
+
+    // [from, to) 범위를 순서대로 방문. 경로는 앞에서부터 이어서 풀기 때문에 getPath 를 반복 호출하는 것보다 싸다
+    public void forEach(int from, int to, EntryVisitor visitor) {
+        if (from >= to) {
+            return;
+        }
+        Cursor cursor = new Cursor(from);
+        for (int index = from; index < to; index++) {
+            visitor.visit(index, cursor.next());
+        }
+    }
+
+    // 경로를 순서대로 꺼내는 반복자. 두 스냅샷을 나란히 훑을 때 (merge) 사용
+    public Iterator<String> pathIterator() {
+        Cursor cursor = new Cursor(0);
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public String next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                index++;
+                return cursor.next();
+            }
+        };
+    }
+
+    public List<String> paths() {
+        List<String> paths = new ArrayList<>(size);
+        forEach((index, path) -> paths.add(path));
+        return paths;
+    }
+
+    // 조건에 맞는 항목만 남긴 스냅샷
+    public CommitSnapshot filter(Predicate<String> predicate) {
+        Builder builder = new Builder();
+        forEach((index, path) -> {
+            if (predicate.test(path)) {
+                builder.add(path, sizes[index], modifiedTimes[index], hashes, index * HASH_LENGTH,
+                        getDevice(index), getInode(index));
+            }
+        });
+        return builder.build();
+    }
+
+    // 커밋 캐시에서 크기 기준으로 내보내기 위한 대략적인 힙 사용량
+    public long estimatedBytes() {
+        return 64L + pathData.length + blockOffsets.length * 4L + size * (8L + 8L + HASH_LENGTH)
+                + (inodes == null ? 0 : size * 16L);
+    }
+
+    /**
+     * 기존 getFileMetadataMap() 형식 (key:경로, value:"크기,수정시간,해시") 의 읽기 전용 뷰.
+     * 값을 꺼낼 때마다 문자열을 만들기 때문에 새 코드는 위의 메서드를 쓸 것.
+     */
+    public Map<String, String> asMetadataMap() {
+        return new AbstractMap<>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String path && indexOf(path) >= 0;
+            }
+
+            @Override
+            public String get(Object key) {
+                if (!(key instanceof String path)) {
+                    return null;
+                }
+                int index = indexOf(path);
+                return index < 0 ? null : formatMetadata(index);
+            }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+
+                    @Override
+                    public Iterator<Entry<String, String>> iterator() {
+                        Cursor cursor = new Cursor(0);
+                        return new Iterator<>() {
+                            private int index = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return index < size;
+                            }
+
+                            @Override
+                            public Entry<String, String> next() {
+                                if (index >= size) {
+                                    throw new NoSuchElementException();
+                                }
+                                String path = cursor.next();
+                                return new SimpleImmutableEntry<>(path, formatMetadata(index++));
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    private String formatMetadata(int index) {
+        return sizes[index] + "," + modifiedTimes[index] + "," + getHash(index);
+    }
+
+    private String blockHead(int block) {
+        int[] position = {blockOffsets[block]};
+        readVarInt(pathData, position); // 블록 첫 경로는 공유 길이 0
+        int suffixLength = readVarInt(pathData, position);
+        return new String(pathData, position[0], suffixLength, StandardCharsets.UTF_8);
+    }
+
+    // 경로를 앞에서부터 순서대로 풀어주는 커서
+    private class Cursor {
+        private final int[] position = new int[1];
+        private byte[] buffer = new byte[256];
+        private int length = 0;
+        private int skip;
+
+        Cursor(int index) {
+            position[0] = size == 0 ? 0 : blockOffsets[index / BLOCK_SIZE];
+            skip = index % BLOCK_SIZE;
+        }
+
+        String next() {
+            while (skip > 0) {
+                advance();
+                skip--;
+            }
+            advance();
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void advance() {
+            int shared = readVarInt(pathData, position);
+            int suffixLength = readVarInt(pathData, position);
+            if (shared + suffixLength > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, shared + suffixLength));
+            }
+            System.arraycopy(pathData, position[0], buffer, shared, suffixLength);
+            position[0] += suffixLength;
+            length = shared + suffixLength;
+        }
+    }
+
+    private static int readVarInt(byte[] data, int[] position) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = data[position[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * 경로 순서대로 add 해서 스냅샷을 만든다.
+     */
+    public static class Builder {
+        private final ByteArrayOutputStream pathData = new ByteArrayOutputStream();
+        private int[] blockOffsets;
+        private long[] sizes;
+        private long[] modifiedTimes;
+        private byte[] hashes;
+        private long[] devices;
+        private long[] inodes;
+        private boolean hasFileKeys = false;
+        private int size = 0;
+        private String previousPath;
+        private byte[] previousPathBytes = new byte[0];
+
+        public Builder() {
+            this(64);
+        }
+
+        public Builder(int expectedSize) {
+            int capacity = Math.max(1, expectedSize);
+            blockOffsets = new int[capacity / BLOCK_SIZE + 1];
+            sizes = new long[capacity];
+            modifiedTimes = new long[capacity];
+            hashes = new byte[capacity * HASH_LENGTH];
+            devices = new long[capacity];
+            inodes = new long[capacity];
+        }
+
+        public Builder add(String path, long fileSize, long modifiedTime, String hexHash) {
+            return add(path, fileSize, modifiedTime, HashUtil.hexToBytes(hexHash), 0);
+        }
+
+        public Builder add(String path, long fileSize, long modifiedTime, byte[] hash, int hashOffset) {
+            return add(path, fileSize, modifiedTime, hash, hashOffset, 0, 0);
+        }
+
+        // inode 가 0 이면 fileKey 없음
+        public Builder add(String path, long fileSize, long modifiedTime, byte[] hash, int hashOffset, long device, long inode) {
+            if (previousPath != null && previousPath.compareTo(path) >= 0) {
+                throw new IllegalArgumentException("paths must be added in sorted order: " + previousPath + ", " + path);
+            }
+            ensureCapacity(size + 1);
+
+            byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            if (size % BLOCK_SIZE == 0) {
+                blockOffsets[size / BLOCK_SIZE] = pathData.size();
+            } else {
+                int limit = Math.min(pathBytes.length, previousPathBytes.length);
+                while (shared < limit && pathBytes[shared] == previousPathBytes[shared]) {
+                    shared++;
+                }
+            }
+            writeVarInt(shared);
+            writeVarInt(pathBytes.length - shared);
+            pathData.write(pathBytes, shared, pathBytes.length - shared);
+
+            sizes[size] = fileSize;
+            modifiedTimes[size] = modifiedTime;
+            System.arraycopy(hash, hashOffset, hashes, size * HASH_LENGTH, HASH_LENGTH);
+            devices[size] = device;
+            inodes[size] = inode;
+            hasFileKeys |= inode != 0;
+            size++;
+            previousPath = path;
+            previousPathBytes = pathBytes;
+            return this;
+        }
+
+        public CommitSnapshot build() {
+            int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            return new CommitSnapshot(size, pathData.toByteArray(),
+                    Arrays.copyOf(blockOffsets, blockCount),
+                    Arrays.copyOf(sizes, size),
+                    Arrays.copyOf(modifiedTimes, size),
+                    Arrays.copyOf(hashes, size * HASH_LENGTH),
+                    hasFileKeys ? Arrays.copyOf(devices, size) : null,
+                    hasFileKeys ? Arrays.copyOf(inodes, size) : null);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= sizes.length) {
+                return;
+            }
+            int newCapacity = Math.max(capacity, sizes.length * 2);
+            sizes = Arrays.copyOf(sizes, newCapacity);
+            modifiedTimes = Arrays.copyOf(modifiedTimes, newCapacity);
+            hashes = Arrays.copyOf(hashes, newCapacity * HASH_LENGTH);
+            devices = Arrays.copyOf(devices, newCapacity);
+            inodes = Arrays.copyOf(inodes, newCapacity);
+            blockOffsets = Arrays.copyOf(blockOffsets, newCapacity / BLOCK_SIZE + 1);
+        }
+
+        private void writeVarInt(int value) {
+            while ((value & ~0x7f) != 0) {
+                pathData.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            pathData.write(value);
+        }
+    }
+}
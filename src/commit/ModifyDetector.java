@@ -1,9 +1,11 @@
 package commit;
 
 import util.FileUtil;
+import util.SfvConfig;
+import util.Tuning;
+import util.WorkTreeFilter;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -19,22 +21,40 @@ public class ModifyDetector {
      * 2. Work Queue 방식 병렬처리(모든 파일을 작업 큐에 넣고, 여러 워커 스레드가 큐에서 작업을 가져가서 처리)
      */
 
+    // 기본값 (sfv tune 을 안 했을 때)
+    public static final Tuning DEFAULT_TUNING = new Tuning("v2", 0, 0);
+
     public static List<Path> findModifiedFiles() throws IOException {
-        return doStrategyV2(); // TODO : 여기서 알고리즘 갈아끼우기
+        return findModifiedFiles(WorkTreeFilter.load());
+    }
+
+    // sparse 패턴 등으로 범위가 제한된 경우, 범위 안의 파일만 검사한다
+    public static List<Path> findModifiedFiles(WorkTreeFilter filter) throws IOException {
+        String head = FileUtil.getHEADValue();
+        return findModifiedFiles(head.isEmpty() ? null : CommitService.loadCommitFromCommitDirectory(head), filter);
+    }
+
+    // 호출하는 쪽에서 이미 HEAD 커밋을 읽었으면 그대로 넘긴다. (첫 커밋 전이면 null)
+    public static List<Path> findModifiedFiles(Commit lastCommit, WorkTreeFilter filter) throws IOException {
+        return findModifiedFiles(lastCommit, filter, Tuning.load(SfvConfig.STATUS, DEFAULT_TUNING));
+    }
+
+    // 방식은 .sfv/config 의 status.strategy (v1, v2, v3), v3 은 status.threads 개의 스레드
+    public static List<Path> findModifiedFiles(Commit lastCommit, WorkTreeFilter filter, Tuning tuning) throws IOException {
+        StatCache statCache = StatCache.load(lastCommit);
+        return switch (tuning.strategy()) {
+            case "v1" -> doStrategyV1(lastCommit, filter, statCache);
+            case "v3" -> doStrategyV3(lastCommit, filter, statCache, tuning.threads() > 0 ? tuning.threads() : 11);
+            default -> doStrategyV2(lastCommit, filter, statCache);
+        };
     }
 
     // V1 전략 : 싱글스레드
-    private static List<Path> doStrategyV1() throws IOException {
+    private static List<Path> doStrategyV1(Commit lastCommit, WorkTreeFilter filter, StatCache statCache) throws IOException {
         List<Path> modifiedFiles = new ArrayList<>();
-        String head = FileUtil.getHEADValue();
-        Commit lastCommit = head.isEmpty() ? null : CommitService.loadCommitFromCommitDirectory(head);
 
 
-        Files.walk(FileUtil.getRootPath())
-                .filter(path -> !path.startsWith(FileUtil.getDotSfvPath()))
-                .filter(path -> !path.toString().contains("/."))
-                .filter(path -> !path.toString().contains("/out"))
-                .filter(Files::isRegularFile)
+        filter.walk()
                 .forEach(path -> {
                     try {
                         long currentSize = FileUtil.getFileSize(path);
@@ -43,14 +63,12 @@ public class ModifyDetector {
                         if (lastCommit != null) {
                             Path relativePath = FileUtil.getRootPath().relativize(path);
                             String normalizedPath = relativePath.normalize().toString();
-                            String storedInfo = lastCommit.getFileMetadataMap().get(normalizedPath);
-
-                            if (storedInfo != null) {
-                                String[] parts = storedInfo.split(",");
-                                long storedSize = Long.parseLong(parts[0]);
-                                long storedModifiedTime = Long.parseLong(parts[1]);
+                            CommitSnapshot snapshot = lastCommit.getSnapshot();
+                            int storedIndex = snapshot.indexOf(normalizedPath);
 
-                                if (currentSize != storedSize || currentModifiedTime != storedModifiedTime) {
+                            if (storedIndex >= 0) {
+                                // 수정시간만 바뀐 파일이 status --verify 로 확인된 적 있으면 안 바뀐 것으로 본다
+                                if (!statCache.isUnchanged(snapshot, storedIndex, normalizedPath, currentSize, currentModifiedTime)) {
                                     modifiedFiles.add(path);
                                 }
                             } else {
@@ -68,17 +86,11 @@ public class ModifyDetector {
     }
 
     // V2 전략 : ParallelStream 사용
-    private static List<Path> doStrategyV2() throws IOException {
+    private static List<Path> doStrategyV2(Commit lastCommit, WorkTreeFilter filter, StatCache statCache) throws IOException {
         List<Path> modifiedFiles = Collections.synchronizedList(new ArrayList<>());
-        String head = FileUtil.getHEADValue();
-        Commit lastCommit = head.isEmpty() ? null : CommitService.loadCommitFromCommitDirectory(head);
-
-        Files.walk(FileUtil.getRootPath())
-                .filter(path -> !path.startsWith(FileUtil.getDotSfvPath()))
-                .filter(path -> !path.toString().contains("/."))
-                .filter(path -> !path.toString().contains("/out"))
-                .filter(Files::isRegularFile)
-                .parallel()  // 스트림을 병렬로 처리
+
+        filter.walk()
+                .parallelStream()  // 스트림을 병렬로 처리
                 .forEach(path -> {
                     try {
                         long currentSize = FileUtil.getFileSize(path);
@@ -87,14 +99,11 @@ public class ModifyDetector {
                         if (lastCommit != null) {
                             Path relativePath = FileUtil.getRootPath().relativize(path);
                             String normalizedPath = relativePath.normalize().toString();
-                            String storedInfo = lastCommit.getFileMetadataMap().get(normalizedPath);
+                            CommitSnapshot snapshot = lastCommit.getSnapshot();
+                            int storedIndex = snapshot.indexOf(normalizedPath);
 
-                            if (storedInfo != null) {
-                                String[] parts = storedInfo.split(",");
-                                long storedSize = Long.parseLong(parts[0]);
-                                long storedModifiedTime = Long.parseLong(parts[1]);
-
-                                if (currentSize != storedSize || currentModifiedTime != storedModifiedTime) {
+                            if (storedIndex >= 0) {
+                                if (!statCache.isUnchanged(snapshot, storedIndex, normalizedPath, currentSize, currentModifiedTime)) {
                                     modifiedFiles.add(path);
                                 }
                             } else {
@@ -112,23 +121,14 @@ public class ModifyDetector {
     }
 
     // V3 : 고정크기 청크 분할
-    private static List<Path> doStrategyV3() throws IOException {
+    private static List<Path> doStrategyV3(Commit lastCommit, WorkTreeFilter filter, StatCache statCache, int threadCount) throws IOException {
         List<Path> modifiedFiles = Collections.synchronizedList(new ArrayList<>());
-        String head = FileUtil.getHEADValue();
-        Commit lastCommit = head.isEmpty() ? null : CommitService.loadCommitFromCommitDirectory(head);
 
-        int threadCount = 11; // 스레드 개수
         ExecutorService executor = Executors.newFixedThreadPool(threadCount);
         List<Future<?>> futures = new ArrayList<>();
 
         // 1. 모든 파일 수집
-        List<Path> allFiles = new ArrayList<>();
-        Files.walk(FileUtil.getRootPath())
-                .filter(path -> !path.startsWith(FileUtil.getDotSfvPath()))
-                .filter(path -> !path.toString().contains("/."))
-                .filter(path -> !path.toString().contains("/out"))
-                .filter(Files::isRegularFile)
-                .forEach(allFiles::add);
+        List<Path> allFiles = filter.walk();
 
         // 2. 청크 크기 계산
         int totalFiles = allFiles.size();
@@ -137,6 +137,7 @@ public class ModifyDetector {
         // 3. 각 스레드에 고정된 작업 범위 배정
         for (int i = 0; i < threadCount; i++) {
             int start = i * chunkSize;
+            if (start >= totalFiles) break; // 파일 수가 스레드 수보다 적은 경우
             int end = Math.min(start + chunkSize, totalFiles); // 범위 초과 방지
 
             List<Path> chunk = allFiles.subList(start, end);
@@ -152,14 +153,11 @@ public class ModifyDetector {
                             if (lastCommit != null) {
                                 Path relativePath = FileUtil.getRootPath().relativize(path);
                                 String normalizedPath = relativePath.normalize().toString();
-                                String storedInfo = lastCommit.getFileMetadataMap().get(normalizedPath);
-
-                                if (storedInfo != null) {
-                                    String[] parts = storedInfo.split(",");
-                                    long storedSize = Long.parseLong(parts[0]);
-                                    long storedModifiedTime = Long.parseLong(parts[1]);
+                                CommitSnapshot snapshot = lastCommit.getSnapshot();
+                                int storedIndex = snapshot.indexOf(normalizedPath);
 
-                                    if (currentSize != storedSize || currentModifiedTime != storedModifiedTime) {
+                                if (storedIndex >= 0) {
+                                        if (!statCache.isUnchanged(snapshot, storedIndex, normalizedPath, currentSize, currentModifiedTime)) {
                                         modifiedFiles.add(path);
                                     }
                                 } else {
@@ -0,0 +1,167 @@
+package commit;
+
+import util.FileUtil;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class SpillSorter implements Closeable {
+
+    /**
+     * 커밋 항목 (경로, 크기, 수정시간, 해시, 장치/inode) 을 경로 순으로 정렬한다. 순서 상관없이 여러 스레드에서 add 해도 됨.
+     * 메모리에는 bufferSize 개까지만 들고 있고, 넘치면 정렬해서 .sfv/tmp 아래 run 파일로 내보낸다.
+     * 끝나면 run 파일들을 k-way merge 하면서 CommitSnapshot.Builder 에 순서대로 넣는다.
+     *
+     * run 파일 형식 : [int 경로 바이트 길이][경로 UTF-8][long 크기][long 수정시간][해시 20 바이트][long 장치][long inode] 의 나열
+     */
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final int bufferSize;
+    private final Path spillDirectory;
+    private final List<Path> runs = new ArrayList<>();
+    private List<Entry> buffer;
+    private long count = 0;
+
+    public SpillSorter(int bufferSize) {
+        this.bufferSize = bufferSize;
+        this.spillDirectory = FileUtil.getTmpPath().resolve("sort-" + UUID.randomUUID());
+        this.buffer = new ArrayList<>(Math.min(bufferSize, 1024));
+    }
+
+    public synchronized void add(String path, long size, long modifiedTime, byte[] hash, long device, long inode) throws IOException {
+        buffer.add(new Entry(path, size, modifiedTime, hash, device, inode));
+        count++;
+        if (buffer.size() >= bufferSize) {
+            spill();
+        }
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized int runCount() {
+        return runs.size();
+    }
+
+    // 모든 항목을 경로 순으로 합쳐서 스냅샷을 만든다. 같은 경로가 두 번 들어오면 예외
+    public synchronized CommitSnapshot build() throws IOException {
+        if (count > Integer.MAX_VALUE) {
+            throw new IOException("too many files for one commit : " + count);
+        }
+        CommitSnapshot.Builder builder = new CommitSnapshot.Builder((int) count);
+
+        // 1. 한 번도 넘치지 않았으면 메모리에서 바로
+        if (runs.isEmpty()) {
+            buffer.sort(Comparator.comparing(Entry::path));
+            for (Entry entry : buffer) {
+                builder.add(entry.path(), entry.size(), entry.modifiedTime(), entry.hash(), 0, entry.device(), entry.inode());
+            }
+            buffer = new ArrayList<>();
+            return builder.build();
+        }
+
+        // 2. 남은 것도 run 으로 내보내고 k-way merge
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        PriorityQueue<RunReader> heap = new PriorityQueue<>(Comparator.comparing((RunReader reader) -> reader.current.path()));
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                if (reader.advance()) {
+                    heap.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            while (!heap.isEmpty()) {
+                RunReader reader = heap.poll();
+                Entry entry = reader.current;
+                builder.add(entry.path(), entry.size(), entry.modifiedTime(), entry.hash(), 0, entry.device(), entry.inode());
+                if (reader.advance()) {
+                    heap.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } finally {
+            for (RunReader reader : heap) {
+                reader.close();
+            }
+        }
+        return builder.build();
+    }
+
+    // run 파일 정리
+    @Override
+    public synchronized void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        Files.deleteIfExists(spillDirectory);
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(Comparator.comparing(Entry::path));
+        Files.createDirectories(spillDirectory);
+        Path run = spillDirectory.resolve("run-" + runs.size());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 256 * 1024))) {
+            for (Entry entry : buffer) {
+                byte[] pathBytes = entry.path().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(pathBytes.length);
+                out.write(pathBytes);
+                out.writeLong(entry.size());
+                out.writeLong(entry.modifiedTime());
+                out.write(entry.hash(), 0, CommitSnapshot.HASH_LENGTH);
+                out.writeLong(entry.device());
+                out.writeLong(entry.inode());
+            }
+        }
+        runs.add(run);
+        buffer = new ArrayList<>(Math.min(bufferSize, 1024));
+    }
+
+    private record Entry(String path, long size, long modifiedTime, byte[] hash, long device, long inode) {
+    }
+
+    private static class RunReader implements Closeable {
+        private final DataInputStream in;
+        private Entry current;
+
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 64 * 1024));
+        }
+
+        boolean advance() throws IOException {
+            int pathLength;
+            try {
+                pathLength = in.readInt();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            byte[] pathBytes = in.readNBytes(pathLength);
+            long size = in.readLong();
+            long modifiedTime = in.readLong();
+            byte[] hash = in.readNBytes(CommitSnapshot.HASH_LENGTH);
+            if (pathBytes.length != pathLength || hash.length != CommitSnapshot.HASH_LENGTH) {
+                throw new EOFException("truncated sort run");
+            }
+            long device = in.readLong();
+            long inode = in.readLong();
+            current = new Entry(new String(pathBytes, StandardCharsets.UTF_8), size, modifiedTime, hash, device, inode);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
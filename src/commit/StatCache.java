@@ -0,0 +1,113 @@
+package commit;
+
+import util.FileStat;
+import util.FileUtil;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+public class StatCache {
+
+    /**
+     * 수정시간은 HEAD 와 다르지만 내용은 같다고 해시로 확인한 파일들 (.sfv/statcache).
+     * status --verify 가 확인한 파일을 지금의 크기/수정시간과 같이 적어두면
+     * ModifyDetector 와 커밋은 크기/수정시간이 그대로인 동안 그 파일을 안 바뀐 파일로 보고 다시 읽지 않는다.
+     * HEAD 커밋 ID 와 같이 저장하고, HEAD 가 바뀌면 (commit, checkout) 통째로 무시한다. (새 커밋에는 새 수정시간이 들어감)
+     * 수정시간이 캐시 파일의 수정시간보다 확실히 이전인 항목만 쓴다. (git 의 racily clean 규칙)
+     * 같은 수정시간 단위 안에서 해시한 뒤에 같은 크기로 다시 쓰인 파일은 stamp 가 그대로라서 구별할 수 없기 때문
+     * (NFS 처럼 수정시간 단위가 거칠면 특히)
+     * [byte 버전][UTF HEAD 커밋 ID][int 개수] 다음 [UTF 경로][long 크기][long 수정시간] 의 나열
+     */
+
+    private static final byte VERSION = 1;
+
+    public static final StatCache EMPTY = new StatCache("", Map.of());
+
+    private record Stamp(long size, long modifiedTime) {
+    }
+
+    private final String headId;
+    private final Map<String, Stamp> entries;
+
+    private StatCache(String headId, Map<String, Stamp> entries) {
+        this.headId = headId;
+        this.entries = entries;
+    }
+
+    // HEAD 에 대한 캐시. 없거나, 다른 커밋의 것이거나, 읽을 수 없으면 EMPTY (캐시일 뿐이므로 오류는 무시)
+    public static StatCache load(Commit headCommit) {
+        Path path = FileUtil.getStatCachePath();
+        if (headCommit == null || !Files.exists(path)) {
+            return EMPTY;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readByte() != VERSION || !in.readUTF().equals(headCommit.getId())) {
+                return EMPTY;
+            }
+            long writtenTime = FileUtil.getLastModifiedTime(path); // 파일시스템의 시계 기준
+            int count = in.readInt();
+            Map<String, Stamp> entries = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String entryPath = in.readUTF();
+                Stamp stamp = new Stamp(in.readLong(), in.readLong());
+                if (stamp.modifiedTime() < writtenTime) {
+                    entries.put(entryPath, stamp);
+                }
+            }
+            return new StatCache(headCommit.getId(), entries);
+        } catch (IOException e) {
+            return EMPTY;
+        }
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * path 가 HEAD 의 headIndex 항목과 같은 내용인지. 크기/수정시간이 HEAD 와 같거나, 지금의 크기/수정시간으로 확인된 적이 있으면 true
+     */
+    public boolean isUnchanged(CommitSnapshot headSnapshot, int headIndex, String path, long size, long modifiedTime) {
+        if (headSnapshot.getSize(headIndex) != size) {
+            return false;
+        }
+        if (headSnapshot.getModifiedTime(headIndex) == modifiedTime) {
+            return true;
+        }
+        Stamp stamp = entries.get(path);
+        return stamp != null && stamp.size() == size && stamp.modifiedTime() == modifiedTime;
+    }
+
+    // 새로 확인된 파일들을 더해서 저장한다. 다른 HEAD 의 캐시였으면 그 항목은 버림
+    public static void save(Commit headCommit, StatCache previous, Map<String, FileStat> verified) throws IOException {
+        Map<String, Stamp> entries = new HashMap<>();
+        if (previous.headId.equals(headCommit.getId())) {
+            entries.putAll(previous.entries);
+        }
+        long now = System.currentTimeMillis();
+        verified.forEach((path, stat) -> {
+            if (stat.modifiedTime() < now) { // 지금과 같은 수정시간 단위면 아직 다시 쓰일 수 있으므로 적지 않는다
+                entries.put(path, new Stamp(stat.size(), stat.modifiedTime()));
+            }
+        });
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        FileUtil.writeAtomically(FileUtil.getStatCachePath(), false, out -> {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeByte(VERSION);
+            data.writeUTF(headCommit.getId());
+            data.writeInt(entries.size());
+            for (Map.Entry<String, Stamp> entry : entries.entrySet()) {
+                data.writeUTF(entry.getKey());
+                data.writeLong(entry.getValue().size());
+                data.writeLong(entry.getValue().modifiedTime());
+            }
+            data.flush();
+        });
+    }
+}
@@ -0,0 +1,194 @@
+package commit;
+
+import util.FileStat;
+import util.FileUtil;
+import util.HashUtil;
+import util.WorkTreeFilter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class StreamingCommitter {
+
+    /**
+     * 파일 수가 아주 많은 트리를 위한 커밋 방식. 메모리 사용량이 파일 수에 거의 비례하지 않는다.
+     * 1. walk    : 호출한 스레드가 디렉토리를 돌면서 찾은 파일을 크기 제한이 있는 큐에 넣는다 (큐가 차면 대기)
+     * 2. workers : 큐에서 꺼내서 stat, HEAD 와 크기/수정시간이 같으면 (StatCache 로 확인된 것 포함) 해시를 그대로 쓰고 아니면 읽어서 해시 + 오브젝트 저장
+     *              경로가 HEAD 에 없어도 장치/inode/크기/수정시간이 같은 항목이 있으면 이름만 바뀐 파일이므로 그 해시를 쓴다
+     * 3. sort    : 끝난 항목은 SpillSorter 로 넘겨서 일정 개수마다 정렬된 run 파일로 내보낸다
+     * 4. build   : run 파일들을 merge 해서 스냅샷을 만든다
+     * 전체 파일 목록 (Set<Path>), 크기 Map, 파일당 Future 를 만들지 않는다.
+     * 변경 여부는 기본 커밋 (v1 ~ v5), status 와 같은 규칙 : 새 파일이나 내용이 바뀐 파일이 있어야 커밋한다.
+     */
+
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final Path END = Paths.get(""); // 워커 종료 신호
+
+    private final Commit headCommit;
+    private final WorkTreeFilter filter;
+    private final int threadCount;
+    private final int sortBufferSize;
+
+    private StatCache statCache = StatCache.EMPTY;
+    private final AtomicBoolean changed = new AtomicBoolean(false);
+
+    public StreamingCommitter(Commit headCommit, WorkTreeFilter filter, int threadCount, int sortBufferSize) {
+        this.headCommit = headCommit;
+        this.filter = filter;
+        this.threadCount = threadCount;
+        this.sortBufferSize = sortBufferSize;
+    }
+
+    public CommitSnapshot run() throws IOException {
+        CommitSnapshot headSnapshot = headCommit == null ? CommitSnapshot.EMPTY : headCommit.getSnapshot();
+        statCache = StatCache.load(headCommit);
+        BlockingQueue<Path> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> workers = new ArrayList<>();
+
+        try (SpillSorter sorter = new SpillSorter(sortBufferSize)) {
+            // 1. 워커 시작
+            AtomicBoolean failed = new AtomicBoolean(false);
+            for (int i = 0; i < threadCount; i++) {
+                workers.add(executor.submit(() -> {
+                    work(queue, headSnapshot, sorter, failed);
+                    return null;
+                }));
+            }
+
+            // 2. walk 하면서 큐에 넣기. 실패해도 워커는 종료시켜야 하므로 END 는 항상 넣는다
+            try {
+                filter.walk(file -> {
+                    try {
+                        queue.put(file);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("commit interrupted");
+                    }
+                });
+            } finally {
+                for (int i = 0; i < threadCount; i++) {
+                    putUninterruptibly(queue, END);
+                }
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+
+            // 3. 범위 밖의 파일은 검사하지 않았으므로 HEAD 의 항목을 그대로 가져간다
+            carryOverOutOfScope(headSnapshot, filter, sorter);
+
+            // 4. 정렬된 항목들로 스냅샷 만들기
+            return sorter.build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("commit interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Error processing files", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // 범위 밖의 HEAD 항목을 sorter 에 넣는다 (CommitPipeline 도 같이 씀)
+    static void carryOverOutOfScope(CommitSnapshot headSnapshot, WorkTreeFilter filter, SpillSorter sorter) throws IOException {
+        if (!filter.isRestricted()) {
+            return;
+        }
+        try {
+            headSnapshot.forEach((index, path) -> {
+                if (filter.includes(path)) {
+                    return;
+                }
+                try {
+                    sorter.add(path, headSnapshot.getSize(index), headSnapshot.getModifiedTime(index),
+                            headSnapshot.getHashBytes(index), headSnapshot.getDevice(index), headSnapshot.getInode(index));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // 새 파일이나 내용이 바뀐 파일이 있으면 true. 지워지기만 한 파일은 status, ModifyDetector 처럼 변경으로 보지 않는다
+    public boolean hasChanges() {
+        return changed.get();
+    }
+
+    private void work(BlockingQueue<Path> queue, CommitSnapshot headSnapshot, SpillSorter sorter, AtomicBoolean failed)
+            throws Exception {
+        Exception failure = null;
+        while (true) {
+            Path file = queue.take();
+            if (file == END) {
+                break;
+            }
+            if (failed.get()) {
+                continue; // 다른 워커가 실패했으면 walk 가 막히지 않도록 큐만 비운다
+            }
+            try {
+                processFile(file, headSnapshot, sorter);
+            } catch (IOException | RuntimeException e) {
+                failed.set(true);
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void processFile(Path file, CommitSnapshot headSnapshot, SpillSorter sorter) throws IOException {
+        String normalizedPath = FileUtil.getRootPath().relativize(file).normalize().toString();
+        FileStat stat;
+        byte[] hash;
+        try {
+            stat = FileUtil.stat(file);
+
+            int headIndex = headSnapshot.indexOf(normalizedPath);
+            if (headIndex >= 0 && statCache.isUnchanged(headSnapshot, headIndex, normalizedPath, stat.size(), stat.modifiedTime())) {
+                hash = headSnapshot.getHashBytes(headIndex); // 안 바뀐 파일은 다시 읽지 않는다
+            } else {
+                int movedIndex = headSnapshot.indexOfFile(stat);
+                if (movedIndex >= 0) {
+                    hash = headSnapshot.getHashBytes(movedIndex); // 이름만 바뀐 파일
+                } else {
+                    hash = HashUtil.hexToBytes(FileUtil.storeObject(file));
+                }
+                changed.set(true);
+            }
+        } catch (IOException e) {
+            System.err.println("Error processing file: " + file);
+            return;
+        }
+        sorter.add(normalizedPath, stat.size(), stat.modifiedTime(), hash, stat.device(), stat.inode());
+    }
+
+    private static void putUninterruptibly(BlockingQueue<Path> queue, Path value) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(value);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package config;
+
+import util.FileUtil;
+import util.RepositoryLock;
+import util.SfvConfig;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class ConfigService {
+
+    public void list() throws IOException {
+        FileUtil.validateSfvRepository();
+        for (Map.Entry<String, String> entry : SfvConfig.load().entries().entrySet()) {
+            System.out.println(entry.getKey() + "=" + entry.getValue());
+        }
+    }
+
+    public void get(String key) throws IOException {
+        FileUtil.validateSfvRepository();
+        String value = SfvConfig.load().get(key);
+        System.out.println(value == null ? "(not set)" : value);
+    }
+
+    // value 가 null 이면 키를 지운다. 읽고-고치고-쓰는 사이에 tune 이 저장하지 않도록 writer 를 잡는다
+    @SuppressWarnings("try")
+    public void set(String key, String value) throws IOException {
+        FileUtil.validateSfvRepository();
+        try (RepositoryLock ignored = RepositoryLock.writer()) {
+            SfvConfig config = SfvConfig.load();
+            config.set(key, value);
+            config.save();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package daemon;
+
+import util.FileUtil;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class DaemonClient {
+
+    public static final int NOT_FORWARDED = -1;
+
+    /**
+     * 데몬이 떠 있으면 명령을 데몬으로 넘기고 데몬이 보낸 종료 코드를 반환한다.
+     * 데몬이 없거나 소켓이 죽어있으면 NOT_FORWARDED 를 반환하고, 호출한 쪽에서 직접 실행한다.
+     */
+    public static int forward(String[] args) {
+        // init, daemon 명령은 항상 현재 프로세스에서 실행
+        if (args.length == 0 || args[0].equals("init") || args[0].equals("daemon")) {
+            return NOT_FORWARDED;
+        }
+        return send(args);
+    }
+
+    public static boolean stop() {
+        return send(new String[]{"daemon", "stop"}) != NOT_FORWARDED;
+    }
+
+    @SuppressWarnings("try")
+    public static boolean isRunning() {
+        Path socketPath = FileUtil.getDaemonSocketPath();
+        if (!Files.exists(socketPath)) {
+            return false;
+        }
+        try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int send(String[] args) {
+        Path socketPath = FileUtil.getDaemonSocketPath();
+        if (!Files.exists(socketPath)) {
+            return NOT_FORWARDED;
+        }
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException e) {
+            return NOT_FORWARDED; // 죽은 소켓. 직접 실행
+        }
+
+        try (channel) {
+            // 1. 요청 전송
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            // 2. 종료 프레임이 올 때까지 출력 중계 (종료 프레임의 길이 자리가 종료 코드)
+            int exitStatus;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] buffer = new byte[8192];
+            while (true) {
+                byte type = in.readByte();
+                int length = in.readInt();
+                if (type == DaemonServer.FRAME_END) {
+                    exitStatus = length;
+                    break;
+                }
+                PrintStream target = type == DaemonServer.FRAME_ERR ? System.err : System.out;
+                while (length > 0) {
+                    int read = in.read(buffer, 0, Math.min(buffer.length, length));
+                    if (read < 0) {
+                        throw new EOFException();
+                    }
+                    target.write(buffer, 0, read);
+                    length -= read;
+                }
+            }
+            System.out.flush();
+            System.err.flush();
+            return exitStatus;
+        } catch (IOException e) {
+            System.err.println("[daemon] connection lost : " + e.getMessage());
+            return 1;
+        }
+    }
+}
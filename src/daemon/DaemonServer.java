@@ -0,0 +1,155 @@
+package daemon;
+
+import util.FileUtil;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class DaemonServer {
+
+    /**
+     * 리포지토리마다 하나씩 띄우는 상주 프로세스.
+     * .sfv/daemon.sock (유닉스 도메인 소켓) 으로 명령을 받아서 같은 JVM 안에서 실행한다.
+     * JIT 워밍업, HEAD 커밋, 오브젝트 존재 여부 인덱스가 명령 사이에 유지된다.
+     *
+     * 요청 : int argc, UTF 문자열 argc 개
+     * 응답 : 프레임의 나열. [byte 종류][int 길이][바이트들], 종류 0 이 오면 종료
+     *        (1 : 표준출력, 2 : 표준에러). 종료 프레임의 길이 자리에는 명령의 종료 코드를 넣는다
+     */
+
+    static final byte FRAME_END = 0;
+    static final byte FRAME_OUT = 1;
+    static final byte FRAME_ERR = 2;
+
+    public interface CommandHandler {
+        int handle(String[] args) throws IOException; // 종료 코드
+    }
+
+    private final CommandHandler handler;
+    private volatile boolean running = true;
+
+    public DaemonServer(CommandHandler handler) {
+        this.handler = handler;
+    }
+
+    public void start() throws IOException {
+        FileUtil.validateSfvRepository();
+
+        Path socketPath = FileUtil.getDaemonSocketPath();
+        if (Files.exists(socketPath)) {
+            if (DaemonClient.isRunning()) {
+                throw new FileSystemException("sfv daemon is already running: " + socketPath);
+            }
+            Files.delete(socketPath); // 이전에 비정상 종료된 데몬의 소켓
+        }
+
+        // 오브젝트 존재 여부 인덱스 활성화 (읽은 커밋은 CommitService 의 커밋 캐시에 남아있음)
+        FileUtil.enableObjectIndex();
+
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            originalOut.println("[daemon] listening on " + socketPath);
+
+            // 명령은 한 번에 하나씩 처리한다. (System.out 을 요청별로 바꿔치기하기 때문)
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    serve(client);
+                } catch (IOException e) {
+                    originalErr.println("[daemon] request failed : " + e.getMessage());
+                } finally {
+                    System.setOut(originalOut);
+                    System.setErr(originalErr);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socketPath);
+            originalOut.println("[daemon] stopped.");
+        }
+    }
+
+    private void serve(SocketChannel client) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+
+        // 1. 요청 읽기
+        int argc = in.readInt();
+        String[] args = new String[argc];
+        for (int i = 0; i < argc; i++) {
+            args[i] = in.readUTF();
+        }
+
+        // 2. 표준출력/에러를 클라이언트로 보내도록 바꿔치기
+        PrintStream clientOut = new PrintStream(new FrameOutputStream(out, FRAME_OUT), true);
+        PrintStream clientErr = new PrintStream(new FrameOutputStream(out, FRAME_ERR), true);
+        System.setOut(clientOut);
+        System.setErr(clientErr);
+
+        // 3. 명령 실행
+        int exitStatus = 0;
+        try {
+            if (args.length >= 2 && args[0].equals("daemon") && args[1].equals("stop")) {
+                running = false;
+                clientOut.println("[daemon] stopping.");
+            } else {
+                exitStatus = handler.handle(args);
+            }
+        } catch (IOException | RuntimeException e) {
+            clientErr.println(e.getMessage());
+            exitStatus = 1;
+        }
+
+        // 4. 종료 프레임
+        clientOut.flush();
+        clientErr.flush();
+        synchronized (out) {
+            out.writeByte(FRAME_END);
+            out.writeInt(exitStatus);
+            out.flush();
+        }
+    }
+
+    // 워커 스레드들이 동시에 출력하므로 프레임 단위로 동기화해서 쓴다.
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
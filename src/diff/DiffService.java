@@ -0,0 +1,239 @@
+package diff;
+
+import commit.CommitService;
+import commit.CommitSnapshot;
+import util.FileUtil;
+import util.HashUtil;
+import util.RepositoryLock;
+import util.WorkTreeFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class DiffService {
+
+    /**
+     * 두 커밋, 또는 커밋과 작업 디렉토리 사이의 변경 내용을 unified diff 형식으로 출력한다.
+     * 1. 두 쪽의 메타데이터(크기, 수정시간, 해시)만 비교해서 바뀐 경로를 먼저 추린다
+     * 2. 바뀐 파일들만 병렬로 라인 diff 를 계산하고, 경로 순서대로 바로바로 출력한다
+     * 메모리를 제한하기 위해 동시에 들고 있는 결과 수와 diff 할 파일 크기에 상한을 둔다.
+     */
+
+    private static final long MAX_DIFF_BYTES = 16L * 1024 * 1024; // 이보다 큰 파일은 내용 비교 생략
+    private static final int BINARY_PROBE_BYTES = 8000; // 앞부분에 NUL 이 있으면 바이너리로 취급
+
+    private record Change(String path, String oldHash, String newHash, Path newFile) {
+    }
+
+    /**
+     * @param partialOldCommitId null 이면 HEAD
+     * @param partialNewCommitId null 이면 작업 디렉토리
+     */
+    @SuppressWarnings("try")
+    public void diff(String partialOldCommitId, String partialNewCommitId) throws IOException {
+        FileUtil.validateSfvRepository();
+        try (RepositoryLock ignored = RepositoryLock.shared()) {
+
+            // 1. 비교할 두 쪽 정하기
+            String oldCommitId = partialOldCommitId == null ? FileUtil.getHEADValue()
+                    : FileUtil.findMatchingCommitId(partialOldCommitId);
+            if (oldCommitId.isEmpty()) {
+                System.out.println("No commits yet");
+                return;
+            }
+            CommitSnapshot oldSnapshot = CommitService.loadCommitFromCommitDirectory(oldCommitId).getSnapshot();
+
+            // 2. 바뀐 경로 추리기 (내용은 읽지 않음)
+            List<Change> changes;
+            if (partialNewCommitId == null) {
+                changes = findChangesAgainstWorkingTree(oldSnapshot);
+            } else {
+                String newCommitId = FileUtil.findMatchingCommitId(partialNewCommitId);
+                changes = findChangesBetweenCommits(oldSnapshot,
+                        CommitService.loadCommitFromCommitDirectory(newCommitId).getSnapshot());
+            }
+
+            // 3. 병렬로 diff 계산, 순서대로 출력
+            int changedFiles = printDiffs(changes);
+            System.out.println(changedFiles + " files changed");
+        }
+    }
+
+    // 두 스냅샷 모두 경로 순으로 정렬되어 있으므로 한 번에 나란히 훑는다
+    private static List<Change> findChangesBetweenCommits(CommitSnapshot oldSnapshot, CommitSnapshot newSnapshot) {
+        List<String> oldPaths = oldSnapshot.paths();
+        List<String> newPaths = newSnapshot.paths();
+        List<Change> changes = new ArrayList<>();
+        int i = 0, j = 0;
+        while (i < oldPaths.size() || j < newPaths.size()) {
+            int order = i == oldPaths.size() ? 1 : j == newPaths.size() ? -1 : oldPaths.get(i).compareTo(newPaths.get(j));
+            if (order < 0) {
+                changes.add(new Change(oldPaths.get(i), oldSnapshot.getHash(i), null, null));
+                i++;
+            } else if (order > 0) {
+                changes.add(new Change(newPaths.get(j), null, newSnapshot.getHash(j), null));
+                j++;
+            } else {
+                if (!oldSnapshot.hashEquals(i, newSnapshot, j)) {
+                    changes.add(new Change(oldPaths.get(i), oldSnapshot.getHash(i), newSnapshot.getHash(j), null));
+                }
+                i++;
+                j++;
+            }
+        }
+        return changes;
+    }
+
+    private static List<Change> findChangesAgainstWorkingTree(CommitSnapshot commitSnapshot) throws IOException {
+        // sparse 패턴 밖의 파일은 작업 디렉토리에 없는 게 정상이므로 비교 대상에서 뺀다
+        WorkTreeFilter filter = WorkTreeFilter.load();
+        CommitSnapshot oldSnapshot = filter.filter(commitSnapshot);
+        List<Path> currentFiles = filter.walk();
+
+        // 크기, 수정시간이 같으면 내용도 같다고 본다 (ModifyDetector 와 같은 기준)
+        boolean[] seen = new boolean[oldSnapshot.size()];
+        List<Change> changes = Collections.synchronizedList(new ArrayList<>());
+        currentFiles.parallelStream().forEach(file -> {
+            String normalizedPath = FileUtil.getRootPath().relativize(file).normalize().toString();
+            int storedIndex = oldSnapshot.indexOf(normalizedPath);
+            try {
+                if (storedIndex >= 0) {
+                    seen[storedIndex] = true;
+                    if (FileUtil.getFileSize(file) == oldSnapshot.getSize(storedIndex)
+                            && FileUtil.getLastModifiedTime(file) == oldSnapshot.getModifiedTime(storedIndex)) {
+                        return;
+                    }
+                    changes.add(new Change(normalizedPath, oldSnapshot.getHash(storedIndex), null, file));
+                } else {
+                    changes.add(new Change(normalizedPath, null, null, file));
+                }
+            } catch (IOException e) {
+                System.err.println("Warning: Could not access file: " + file);
+            }
+        });
+
+        oldSnapshot.forEach((index, path) -> {
+            if (!seen[index]) {
+                changes.add(new Change(path, oldSnapshot.getHash(index), null, null));
+            }
+        });
+
+        List<Change> sorted = new ArrayList<>(changes);
+        sorted.sort(Comparator.comparing(Change::path));
+        return sorted;
+    }
+
+    private static int printDiffs(List<Change> changes) throws IOException {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        int windowSize = threadCount * 2; // 출력 대기 중인 결과의 최대 개수
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Deque<Future<String>> window = new ArrayDeque<>();
+        int changedFiles = 0;
+
+        try {
+            for (Change change : changes) {
+                window.add(executor.submit(() -> renderChange(change)));
+                if (window.size() >= windowSize) {
+                    changedFiles += print(window.poll().get());
+                }
+            }
+            while (!window.isEmpty()) {
+                changedFiles += print(window.poll().get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Error computing diff", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return changedFiles;
+    }
+
+    private static int print(String rendered) {
+        if (rendered.isEmpty()) {
+            return 0;
+        }
+        System.out.print(rendered);
+        return 1;
+    }
+
+    private static String renderChange(Change change) throws IOException, NoSuchAlgorithmException {
+        String path = change.path();
+        Path oldFile = change.oldHash() == null ? null : FileUtil.getObjectPath(change.oldHash());
+        Path newFile = change.newFile() != null ? change.newFile()
+                : change.newHash() == null ? null : FileUtil.getObjectPath(change.newHash());
+
+        StringBuilder out = new StringBuilder();
+        out.append("diff --sfv a/").append(path).append(" b/").append(path).append('\n');
+        if (oldFile == null) {
+            out.append("new file\n");
+        } else if (newFile == null) {
+            out.append("deleted file\n");
+        }
+
+        // 1. 너무 큰 파일은 내용을 읽지 않는다
+        long oldSize = oldFile == null ? 0 : FileUtil.getFileSize(oldFile);
+        long newSize = newFile == null ? 0 : FileUtil.getFileSize(newFile);
+        if (oldSize > MAX_DIFF_BYTES || newSize > MAX_DIFF_BYTES) {
+            out.append("Large files a/").append(path).append(" and b/").append(path).append(" differ\n");
+            return out.toString();
+        }
+
+        byte[] oldContent = oldFile == null ? new byte[0] : Files.readAllBytes(oldFile);
+        byte[] newContent = newFile == null ? new byte[0] : Files.readAllBytes(newFile);
+
+        // 2. 수정시간만 바뀌고 내용은 같은 작업 디렉토리 파일은 건너뛴다
+        if (change.newFile() != null && change.oldHash() != null
+                && HashUtil.sha1(newContent).equals(change.oldHash())) {
+            return "";
+        }
+
+        // 3. 바이너리는 내용 비교 생략
+        if (isBinary(oldContent) || isBinary(newContent)) {
+            out.append("Binary files a/").append(path).append(" and b/").append(path).append(" differ\n");
+            return out.toString();
+        }
+
+        // 4. 라인 diff
+        String oldText = new String(oldContent, StandardCharsets.UTF_8);
+        String newText = new String(newContent, StandardCharsets.UTF_8);
+        out.append("--- ").append(oldFile == null ? "/dev/null" : "a/" + path).append('\n');
+        out.append("+++ ").append(newFile == null ? "/dev/null" : "b/" + path).append('\n');
+        out.append(MyersDiff.unifiedDiff(splitLines(oldText), splitLines(newText),
+                missingNewline(oldText), missingNewline(newText)));
+        return out.toString();
+    }
+
+    private static boolean isBinary(byte[] content) {
+        int limit = Math.min(content.length, BINARY_PROBE_BYTES);
+        for (int i = 0; i < limit; i++) {
+            if (content[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    private static boolean missingNewline(String text) {
+        return !text.isEmpty() && text.charAt(text.length() - 1) != '\n';
+    }
+}
@@ -0,0 +1,274 @@
+package diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MyersDiff {
+
+    /**
+     * 라인 단위 Myers diff (선형 공간 버전, middle snake 분할정복).
+     * 각 라인을 정수 id 로 바꿔서 비교하고, 결과로 a 에서 지워진 라인 / b 에 추가된 라인 표시를 만든다.
+     * 그 표시를 가지고 unified diff 형식의 hunk 를 만든다.
+     */
+
+    private static final int CONTEXT = 3;
+
+    private final int[] a;
+    private final int[] b;
+    private final boolean[] deleted;
+    private final boolean[] inserted;
+
+    private MyersDiff(int[] a, int[] b) {
+        this.a = a;
+        this.b = b;
+        this.deleted = new boolean[a.length];
+        this.inserted = new boolean[b.length];
+    }
+
+    /**
+     * @return unified diff 본문 (@@ 헤더부터). 차이가 없으면 빈 문자열
+     */
+    public static String unifiedDiff(List<String> oldLines, List<String> newLines,
+                                     boolean oldMissingNewline, boolean newMissingNewline) {
+        // 1. 라인을 정수 id 로 변환
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = toIds(oldLines, oldMissingNewline, ids);
+        int[] b = toIds(newLines, newMissingNewline, ids);
+
+        // 2. 변경 표시 계산
+        MyersDiff diff = new MyersDiff(a, b);
+        diff.compare(0, a.length, 0, b.length);
+
+        // 3. hunk 생성
+        return diff.format(oldLines, newLines, oldMissingNewline, newMissingNewline);
+    }
+
+    private static int[] toIds(List<String> lines, boolean missingNewline, Map<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i++) {
+            String key = lines.get(i);
+            if (missingNewline && i == result.length - 1) {
+                key = key + '\0'; // 개행 없는 마지막 줄은 개행 있는 같은 줄과 다른 줄로 취급
+            }
+            result[i] = ids.computeIfAbsent(key, k -> ids.size());
+        }
+        return result;
+    }
+
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        // 공통 접두사/접미사 제거
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo++;
+            bLo++;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi--;
+            bHi--;
+        }
+
+        if (aLo == aHi) {
+            for (int j = bLo; j < bHi; j++) {
+                inserted[j] = true;
+            }
+            return;
+        }
+        if (bLo == bHi) {
+            for (int i = aLo; i < aHi; i++) {
+                deleted[i] = true;
+            }
+            return;
+        }
+
+        bisect(aLo, aHi, bLo, bHi);
+    }
+
+    // 앞/뒤 양방향으로 탐색해서 middle snake 를 찾고 그 지점에서 둘로 나눈다
+    private void bisect(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int vOffset = maxD;
+        int vLength = 2 * maxD + 2;
+        int[] v1 = new int[vLength];
+        int[] v2 = new int[vLength];
+        Arrays.fill(v1, -1);
+        Arrays.fill(v2, -1);
+        v1[vOffset + 1] = 0;
+        v2[vOffset + 1] = 0;
+        int delta = n - m;
+        boolean front = (delta % 2 != 0);
+        int k1start = 0, k1end = 0, k2start = 0, k2end = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            // 앞에서부터
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1Offset = vOffset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1])) {
+                    x1 = v1[k1Offset + 1];
+                } else {
+                    x1 = v1[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    x1++;
+                    y1++;
+                }
+                v1[k1Offset] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2Offset = vOffset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < vLength && v2[k2Offset] != -1) {
+                        int x2 = n - v2[k2Offset];
+                        if (x1 >= x2) {
+                            split(aLo, aHi, bLo, bHi, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+
+            // 뒤에서부터
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2Offset = vOffset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1])) {
+                    x2 = v2[k2Offset + 1];
+                } else {
+                    x2 = v2[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                    x2++;
+                    y2++;
+                }
+                v2[k2Offset] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1Offset = vOffset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < vLength && v1[k1Offset] != -1) {
+                        int x1 = v1[k1Offset];
+                        int y1 = vOffset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            split(aLo, aHi, bLo, bHi, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        // 공통 부분이 전혀 없음
+        for (int i = aLo; i < aHi; i++) {
+            deleted[i] = true;
+        }
+        for (int j = bLo; j < bHi; j++) {
+            inserted[j] = true;
+        }
+    }
+
+    private void split(int aLo, int aHi, int bLo, int bHi, int x, int y) {
+        compare(aLo, aLo + x, bLo, bLo + y);
+        compare(aLo + x, aHi, bLo + y, bHi);
+    }
+
+    private String format(List<String> oldLines, List<String> newLines,
+                          boolean oldMissingNewline, boolean newMissingNewline) {
+        // 1. 편집 스크립트 만들기. op : 0 = 같음, 1 = 삭제, 2 = 추가
+        List<int[]> ops = new ArrayList<>();
+        int i = 0, j = 0;
+        while (i < a.length || j < b.length) {
+            if (i < a.length && deleted[i]) {
+                ops.add(new int[]{1, i, j});
+                i++;
+            } else if (j < b.length && inserted[j]) {
+                ops.add(new int[]{2, i, j});
+                j++;
+            } else {
+                ops.add(new int[]{0, i, j});
+                i++;
+                j++;
+            }
+        }
+
+        // 2. 변경 구간 주변으로 CONTEXT 줄씩 붙여서 hunk 로 묶기
+        StringBuilder out = new StringBuilder();
+        int index = 0;
+        while (index < ops.size()) {
+            int change = index;
+            while (change < ops.size() && ops.get(change)[0] == 0) {
+                change++;
+            }
+            if (change == ops.size()) {
+                break;
+            }
+
+            int hunkStart = Math.max(index, change - CONTEXT);
+            int hunkEnd = change;
+            while (true) {
+                while (hunkEnd < ops.size() && ops.get(hunkEnd)[0] != 0) {
+                    hunkEnd++;
+                }
+                int equalRun = hunkEnd;
+                while (equalRun < ops.size() && ops.get(equalRun)[0] == 0) {
+                    equalRun++;
+                }
+                if (equalRun == ops.size() || equalRun - hunkEnd > 2 * CONTEXT) {
+                    hunkEnd = Math.min(ops.size(), hunkEnd + CONTEXT);
+                    break;
+                }
+                hunkEnd = equalRun;
+            }
+
+            appendHunk(out, ops, hunkStart, hunkEnd, oldLines, newLines, oldMissingNewline, newMissingNewline);
+            index = hunkEnd;
+        }
+        return out.toString();
+    }
+
+    private void appendHunk(StringBuilder out, List<int[]> ops, int start, int end,
+                            List<String> oldLines, List<String> newLines,
+                            boolean oldMissingNewline, boolean newMissingNewline) {
+        int oldCount = 0, newCount = 0;
+        for (int k = start; k < end; k++) {
+            int type = ops.get(k)[0];
+            if (type != 2) {
+                oldCount++;
+            }
+            if (type != 1) {
+                newCount++;
+            }
+        }
+        int oldStart = ops.get(start)[1] + (oldCount == 0 ? 0 : 1);
+        int newStart = ops.get(start)[2] + (newCount == 0 ? 0 : 1);
+        out.append("@@ -").append(oldStart).append(',').append(oldCount)
+                .append(" +").append(newStart).append(',').append(newCount).append(" @@\n");
+
+        for (int k = start; k < end; k++) {
+            int[] op = ops.get(k);
+            if (op[0] == 1) {
+                appendLine(out, '-', oldLines.get(op[1]), oldMissingNewline && op[1] == oldLines.size() - 1);
+            } else if (op[0] == 2) {
+                appendLine(out, '+', newLines.get(op[2]), newMissingNewline && op[2] == newLines.size() - 1);
+            } else {
+                appendLine(out, ' ', oldLines.get(op[1]), oldMissingNewline && op[1] == oldLines.size() - 1);
+            }
+        }
+    }
+
+    private static void appendLine(StringBuilder out, char prefix, String line, boolean missingNewline) {
+        out.append(prefix).append(line).append('\n');
+        if (missingNewline) {
+            out.append("\\ No newline at end of file\n");
+        }
+    }
+}
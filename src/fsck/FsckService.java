@@ -0,0 +1,176 @@
+package fsck;
+
+import commit.Commit;
+import commit.CommitService;
+import commit.CommitSnapshot;
+import util.FileUtil;
+import util.RepositoryLock;
+import util.StreamingIO;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FsckService {
+
+    /**
+     * 리포지토리 무결성 검사.
+     * 1. 커밋 : 모든 커밋 파일을 병렬로 읽어서 참조하는 해시를 모은다. 못 읽는 커밋, 없는 이전 커밋, HEAD 도 확인
+     * 2. 오브젝트 목록 : missing (참조되지만 없음), orphaned (아무도 참조 안 함)
+     * 3. 재해시 : 있는 오브젝트를 모두 다시 해시해서 파일 이름과 비교 (corrupt)
+     *    StreamingIO 로 읽으므로 (큰 파일은 mmap) 파일 크기만큼 메모리를 쓰지 않고,
+     *    동시에 읽는 파일 수는 jobs 개로 제한한다. (디스크가 느릴 때 큐가 너무 깊어지지 않도록)
+     */
+
+    private static final int MAX_REPORTED = 20; // 종류별로 출력하는 최대 개수
+
+    private record Reference(String commitId, String path) {
+    }
+
+    // 오류가 하나도 없으면 true
+    @SuppressWarnings("try")
+    public boolean fsck(int jobs) throws IOException {
+        FileUtil.validateSfvRepository();
+        try (RepositoryLock ignored = RepositoryLock.shared()) {
+            long start = System.currentTimeMillis();
+
+            // 1. 커밋 검사, 참조 해시 수집 (해시 -> 처음 본 참조. missing 보고용)
+            List<String> commitIds = FileUtil.getAllCommitIds();
+            Map<String, Reference> referenced = new ConcurrentHashMap<>();
+            Set<String> unreadableCommits = ConcurrentHashMap.newKeySet();
+            Set<String> danglingParents = ConcurrentHashMap.newKeySet();
+            Set<String> commitIdSet = new HashSet<>(commitIds);
+            commitIds.parallelStream().forEach(commitId -> {
+                Commit commit;
+                try {
+                    commit = CommitService.loadCommitUncached(commitId);
+                } catch (IOException | RuntimeException e) {
+                    unreadableCommits.add(commitId);
+                    return;
+                }
+                String previousCommitId = commit.getPreviousCommitId();
+                if (!previousCommitId.isEmpty() && !commitIdSet.contains(previousCommitId)) {
+                    danglingParents.add(commitId);
+                }
+                CommitSnapshot snapshot = commit.getSnapshot();
+                snapshot.forEach((index, path) -> referenced.putIfAbsent(snapshot.getHash(index), new Reference(commitId, path)));
+            });
+            String head = FileUtil.getHEADValue();
+            boolean headMissing = !head.isEmpty() && !commitIdSet.contains(head);
+            long commitEnd = System.currentTimeMillis();
+
+            // 2. 오브젝트 목록과 비교
+            List<Path> objects = new ArrayList<>();
+            int tempFiles = 0;
+            try (var stream = Files.list(FileUtil.getObjectsPath())) {
+                for (Path object : (Iterable<Path>) stream::iterator) {
+                    if (FileUtil.isTempFile(object)) {
+                        tempFiles++; // 쓰다가 중단된 임시파일 (gc 가 유예기간 후 지움)
+                    } else {
+                        objects.add(object);
+                    }
+                }
+            }
+            Set<String> present = new HashSet<>();
+            List<String> orphaned = new ArrayList<>();
+            for (Path object : objects) {
+                String hash = object.getFileName().toString();
+                present.add(hash);
+                if (!referenced.containsKey(hash)) {
+                    orphaned.add(hash);
+                }
+            }
+            List<String> missing = new ArrayList<>();
+            for (String hash : referenced.keySet()) {
+                if (!present.contains(hash)) {
+                    missing.add(hash);
+                }
+            }
+
+            // 3. 재해시 (병렬, 동시에 jobs 개까지)
+            List<String> corrupt = Collections.synchronizedList(new ArrayList<>());
+            LongAdder hashedBytes = new LongAdder();
+            AtomicInteger next = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(jobs);
+            long hashStart = System.currentTimeMillis();
+            try {
+                List<Future<?>> workers = new ArrayList<>();
+                for (int i = 0; i < jobs; i++) {
+                    workers.add(executor.submit(() -> {
+                        int index;
+                        while ((index = next.getAndIncrement()) < objects.size()) {
+                            Path object = objects.get(index);
+                            String expected = object.getFileName().toString();
+                            try {
+                                String actual = StreamingIO.hash(object);
+                                hashedBytes.add(Files.size(object));
+                                if (!actual.equals(expected)) {
+                                    corrupt.add(expected + " (content hashes to " + actual + ")");
+                                }
+                            } catch (IOException e) {
+                                corrupt.add(expected + " (unreadable : " + e.getMessage() + ")");
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("fsck interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("fsck failed : " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+            long end = System.currentTimeMillis();
+
+            // 4. 결과 출력
+            Collections.sort(missing);
+            Collections.sort(orphaned);
+            Collections.sort(corrupt);
+            if (headMissing) {
+                System.out.println("HEAD points to missing commit " + head);
+            }
+            report("unreadable commit", new ArrayList<>(new TreeSet<>(unreadableCommits)), id -> id);
+            report("commit with missing parent", new ArrayList<>(new TreeSet<>(danglingParents)), id -> id);
+            report("missing object", missing, hash -> {
+                Reference reference = referenced.get(hash);
+                return hash + " (" + reference.path() + " in commit " + reference.commitId().substring(0, 7) + ")";
+            });
+            report("corrupt object", corrupt, description -> description);
+            report("orphaned object", orphaned, hash -> hash);
+
+            double hashSeconds = Math.max(1, end - hashStart) / 1000.0;
+            System.out.println("[fsck] commits : " + commitIds.size() + ", referenced objects : " + referenced.size()
+                    + ", objects on disk : " + objects.size() + (tempFiles > 0 ? ", temp files : " + tempFiles : ""));
+            System.out.println("[fsck] missing : " + missing.size() + ", corrupt : " + corrupt.size()
+                    + ", orphaned : " + orphaned.size() + ", unreadable commits : " + unreadableCommits.size());
+            System.out.printf("[fsck] hashed %d bytes with %d jobs : %.1f MB/s, %.0f objects/s%n", hashedBytes.sum(), jobs,
+                    hashedBytes.sum() / hashSeconds / (1024 * 1024), objects.size() / hashSeconds);
+            System.out.println("commit time : " + (commitEnd - start) + ", hash time : " + (end - hashStart));
+            boolean clean = !headMissing && unreadableCommits.isEmpty() && danglingParents.isEmpty()
+                    && missing.isEmpty() && corrupt.isEmpty();
+            System.out.println(clean ? "[fsck] ok" : "[fsck] repository has errors");
+            return clean;
+        }
+    }
+
+    private interface Describer {
+        String describe(String item);
+    }
+
+    private static void report(String kind, List<String> items, Describer describer) {
+        for (int i = 0; i < Math.min(items.size(), MAX_REPORTED); i++) {
+            System.out.println(kind + " " + describer.describe(items.get(i)));
+        }
+        if (items.size() > MAX_REPORTED) {
+            System.out.println("... and " + (items.size() - MAX_REPORTED) + " more " + kind + "s");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package gc;
+
+import commit.CommitService;
+import commit.CommitSnapshot;
+import util.FileUtil;
+import util.RepositoryLock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class GcService {
+
+    /**
+     * 어떤 커밋에서도 참조하지 않는 오브젝트를 .sfv/objects 에서 지운다.
+     * 1. mark  : 모든 커밋 파일을 병렬로 읽어서 참조되는 해시를 모은다
+     * 2. sweep : 오브젝트 디렉토리를 병렬로 돌면서 참조되지 않는 오브젝트를 지운다
+     * 커밋 도중(오브젝트는 썼지만 커밋 파일은 아직 안 쓴 상태)의 오브젝트를 지우지 않도록
+     * graceMillis 보다 최근에 수정된 오브젝트는 남겨둔다.
+     */
+    @SuppressWarnings("try")
+    public void gc(long graceMillis) throws IOException {
+        FileUtil.validateSfvRepository();
+        try (RepositoryLock ignored = RepositoryLock.exclusive()) {
+            long start = System.currentTimeMillis();
+
+            // 1. mark
+            List<String> commitIds = FileUtil.getAllCommitIds();
+            Set<String> reachable = ConcurrentHashMap.newKeySet();
+            try {
+                commitIds.parallelStream().forEach(commitId -> {
+                    try {
+                        CommitSnapshot snapshot = CommitService.loadCommitUncached(commitId).getSnapshot();
+                        for (int i = 0; i < snapshot.size(); i++) {
+                            reachable.add(snapshot.getHash(i));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // 커밋 하나라도 못 읽으면 아무것도 지우지 않는다
+                throw new IOException("gc aborted, could not read commit : " + e.getCause().getMessage(), e.getCause());
+            }
+            long markEnd = System.currentTimeMillis();
+
+            // 2. sweep
+            long threshold = System.currentTimeMillis() - graceMillis;
+            LongAdder scanned = new LongAdder();
+            LongAdder removed = new LongAdder();
+            LongAdder kept = new LongAdder();
+            LongAdder reclaimedBytes = new LongAdder();
+
+            List<Path> objects;
+            try (var stream = Files.list(FileUtil.getObjectsPath())) {
+                objects = stream.toList();
+            }
+            objects.parallelStream().forEach(object -> {
+                scanned.increment();
+                String hash = object.getFileName().toString();
+                if (reachable.contains(hash)) {
+                    return;
+                }
+                try {
+                    if (FileUtil.getLastModifiedTime(object) > threshold) {
+                        kept.increment(); // 유예기간 안의 오브젝트
+                        return;
+                    }
+                    long size = FileUtil.getFileSize(object);
+                    if (Files.deleteIfExists(object)) {
+                        FileUtil.forgetObject(hash);
+                        removed.increment();
+                        reclaimedBytes.add(size);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Warning: Could not remove object: " + hash);
+                }
+            });
+            long end = System.currentTimeMillis();
+
+            // 3. 결과 출력
+            System.out.println("[gc] commits : " + commitIds.size() + ", reachable objects : " + reachable.size());
+            System.out.println("[gc] scanned " + scanned.sum() + " objects, removed " + removed.sum()
+                    + ", kept " + kept.sum() + " within grace period");
+            System.out.println("[gc] reclaimed " + reclaimedBytes.sum() + " bytes");
+            System.out.println("mark time : " + (markEnd - start) + ", sweep time : " + (end - markEnd));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package history;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class ChangedPathFilter {
+
+    /**
+     * 커밋에서 바뀐 경로들의 Bloom filter.
+     * mightContain 이 false 면 그 경로는 확실히 안 바뀐 것, true 면 바뀌었을 수도 있는 것 (오탐 약 1%).
+     * 경로당 BITS_PER_PATH 비트, 해시 HASH_COUNT 개. (double hashing : h1 + i * h2)
+     */
+
+    private static final int BITS_PER_PATH = 10;
+    private static final int HASH_COUNT = 7;
+
+    private final long[] words;
+    private final long bitCount;
+
+    private ChangedPathFilter(long[] words) {
+        this.words = words;
+        this.bitCount = (long) words.length * 64;
+    }
+
+    public static ChangedPathFilter withExpectedPaths(int pathCount) {
+        long bits = Math.max(64, (long) pathCount * BITS_PER_PATH);
+        return new ChangedPathFilter(new long[(int) ((bits + 63) / 64)]);
+    }
+
+    public void add(String path) {
+        long h1 = hash(path);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String path) {
+        long h1 = hash(path);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    public static ChangedPathFilter readFrom(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0) {
+            throw new IOException("invalid changed path filter length : " + length);
+        }
+        long[] words = new long[length];
+        for (int i = 0; i < length; i++) {
+            words[i] = in.readLong();
+        }
+        return new ChangedPathFilter(words);
+    }
+
+    // 64비트 FNV-1a
+    private static long hash(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // splitmix64 마무리 단계
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,132 @@
+package history;
+
+import commit.Commit;
+import commit.CommitSnapshot;
+import util.FileUtil;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class HistoryIndex {
+
+    /**
+     * 커밋마다 .sfv/history/<커밋ID> 에 저장하는 작은 색인.
+     * [byte 버전][UTF 이전 커밋 ID][ChangedPathFilter]
+     * 필터에는 이전 커밋과 비교해서 추가/삭제/수정된 경로와 그 상위 디렉토리들이 들어있다.
+     * 경로별 히스토리 (log -- <path>) 는 커밋을 역직렬화하지 않고 이 파일만 따라가다가
+     * 필터가 "있을 수도" 라고 할 때만 실제 커밋을 읽어서 확인한다.
+     */
+
+    private static final byte VERSION = 1;
+
+    public record Entry(String previousCommitId, ChangedPathFilter filter) {
+    }
+
+    // 커밋할 때 호출. previousSnapshot 은 이전 커밋 (첫 커밋이면 EMPTY)
+    public static void write(Commit commit, CommitSnapshot previousSnapshot, boolean durable) throws IOException {
+        List<String> changedPaths = changedPaths(previousSnapshot, commit.getSnapshot());
+
+        // 상위 디렉토리도 넣어서 디렉토리 단위로도 찾을 수 있게 함
+        List<String> keys = new ArrayList<>(changedPaths);
+        String previousParent = null;
+        for (String path : changedPaths) {
+            for (String parent = parentOf(path); parent != null && !parent.equals(previousParent); parent = parentOf(parent)) {
+                keys.add(parent);
+            }
+            previousParent = parentOf(path);
+        }
+        ChangedPathFilter filter = ChangedPathFilter.withExpectedPaths(keys.size());
+        keys.forEach(filter::add);
+
+        Files.createDirectories(FileUtil.getHistoryPath(""));
+        FileUtil.writeAtomically(FileUtil.getHistoryPath(commit.getId()), durable, out -> {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeByte(VERSION);
+            data.writeUTF(commit.getPreviousCommitId());
+            filter.writeTo(data);
+            data.flush();
+        });
+    }
+
+    // 색인이 없으면 (이 기능 전에 만든 커밋) null
+    public static Entry read(String commitId) throws IOException {
+        Path historyPath = FileUtil.getHistoryPath(commitId);
+        if (!Files.exists(historyPath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(historyPath)))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                return null;
+            }
+            String previousCommitId = in.readUTF();
+            return new Entry(previousCommitId, ChangedPathFilter.readFrom(in));
+        }
+    }
+
+    // 두 스냅샷 사이에 path (파일 또는 디렉토리) 아래에서 바뀐 것이 있는지
+    public static boolean touches(CommitSnapshot previousSnapshot, CommitSnapshot snapshot, String path) {
+        // 1. 파일
+        int previousIndex = previousSnapshot.indexOf(path);
+        int index = snapshot.indexOf(path);
+        if (previousIndex >= 0 || index >= 0) {
+            return previousIndex < 0 || index < 0 || !snapshot.hashEquals(index, previousSnapshot, previousIndex);
+        }
+
+        // 2. 디렉토리 : path/ 로 시작하는 범위를 나란히 비교
+        String prefix = path + "/";
+        int i = previousSnapshot.lowerBound(prefix);
+        int j = snapshot.lowerBound(prefix);
+        while (true) {
+            boolean previousInRange = i < previousSnapshot.size() && previousSnapshot.getPath(i).startsWith(prefix);
+            boolean inRange = j < snapshot.size() && snapshot.getPath(j).startsWith(prefix);
+            if (!previousInRange || !inRange) {
+                return previousInRange != inRange;
+            }
+            if (!previousSnapshot.getPath(i).equals(snapshot.getPath(j)) || !snapshot.hashEquals(j, previousSnapshot, i)) {
+                return true;
+            }
+            i++;
+            j++;
+        }
+    }
+
+    // 경로 순으로 정렬된 두 스냅샷을 나란히 훑으면서 추가/삭제/수정된 경로
+    static List<String> changedPaths(CommitSnapshot previousSnapshot, CommitSnapshot snapshot) {
+        List<String> changed = new ArrayList<>();
+        Iterator<String> previousPaths = previousSnapshot.pathIterator();
+        Iterator<String> paths = snapshot.pathIterator();
+        String previousPath = previousPaths.hasNext() ? previousPaths.next() : null;
+        String path = paths.hasNext() ? paths.next() : null;
+        int i = 0;
+        int j = 0;
+        while (previousPath != null || path != null) {
+            int compare = previousPath == null ? 1 : path == null ? -1 : previousPath.compareTo(path);
+            if (compare < 0) {
+                changed.add(previousPath);
+            } else if (compare > 0) {
+                changed.add(path);
+            } else if (!snapshot.hashEquals(j, previousSnapshot, i)) {
+                changed.add(path);
+            }
+            if (compare <= 0) {
+                previousPath = previousPaths.hasNext() ? previousPaths.next() : null;
+                i++;
+            }
+            if (compare >= 0) {
+                path = paths.hasNext() ? paths.next() : null;
+                j++;
+            }
+        }
+        return changed;
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? null : path.substring(0, slash);
+    }
+}
@@ -2,35 +2,159 @@ package log;
 
 import commit.Commit;
 import commit.CommitService;
+import commit.CommitSnapshot;
+import history.HistoryIndex;
 import util.FileUtil;
+import util.RepositoryLock;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class LogService {
 
+    private static final int PREFETCH_DEPTH = 8; // 출력보다 앞서서 미리 읽어둘 커밋 수
+
+    @SuppressWarnings("try")
     public void getLog() throws IOException {
         FileUtil.validateSfvRepository();
+        try (RepositoryLock ignored = RepositoryLock.shared()) {
+
+            String currentCommitId = FileUtil.getHEADValue();
+            if (currentCommitId.isEmpty()) {
+                System.out.println("No commits yet");
+                return;
+            }
 
-        String currentCommitId = FileUtil.getHEADValue();
-        if (currentCommitId.isEmpty()) {
-            System.out.println("No commits yet");
-            return;
+            // 커밋 히스토리 순회하며 출력
+            // 이전 커밋 읽기(역직렬화)는 백그라운드 스레드가 앞서 나가면서 하고, 여기서는 출력만 한다
+            CommitPrefetcher prefetcher = new CommitPrefetcher(currentCommitId);
+            prefetcher.start();
+            try {
+                Commit currentCommit;
+                while ((currentCommit = prefetcher.next()) != null) {
+                    System.out.println("commit " + currentCommit.getId());
+                    System.out.println("Date: " + currentCommit.getTimestamp());
+                    System.out.println("message: " + currentCommit.getMessage());
+                    System.out.println("-----------------------------------------------");
+                }
+            } finally {
+                prefetcher.interrupt();
+            }
         }
+    }
+
+    /**
+     * path (파일 또는 디렉토리) 를 바꾼 커밋만 출력한다.
+     * 커밋마다 .sfv/history 의 Bloom filter 를 먼저 보고, 확실히 안 바꾼 커밋은 커밋 파일을 읽지 않고 넘어간다.
+     * 필터가 "있을 수도" 라고 하면 커밋과 이전 커밋을 읽어서 실제로 바뀌었는지 확인한다. (오탐 제거)
+     * 색인이 없는 예전 커밋은 직접 비교하고, 그 자리에서 색인을 만들어 둔다.
+     */
+    @SuppressWarnings("try")
+    public void getLog(String path) throws IOException {
+        FileUtil.validateSfvRepository();
+        try (RepositoryLock ignored = RepositoryLock.shared()) {
+
+            String commitId = FileUtil.getHEADValue();
+            if (commitId.isEmpty()) {
+                System.out.println("No commits yet");
+                return;
+            }
+            String targetPath = Paths.get(path).normalize().toString();
+            if (targetPath.isEmpty()) {
+                getLog();
+                return;
+            }
+
+            int scanned = 0;
+            int skipped = 0;
+            int falsePositives = 0;
+            int indexed = 0;
+            while (!commitId.isEmpty()) {
+                scanned++;
+
+                // 1. 색인으로 걸러내기 (커밋 파일 안 읽음)
+                HistoryIndex.Entry entry = HistoryIndex.read(commitId);
+                if (entry != null && !entry.filter().mightContain(targetPath)) {
+                    skipped++;
+                    commitId = entry.previousCommitId();
+                    continue;
+                }
 
-        // 커밋 히스토리 순회하며 출력
-        Commit currentCommit = CommitService.loadCommitFromCommitDirectory(currentCommitId);
-        while (currentCommit != null) {
-            System.out.println("commit " + currentCommit.getId());
-            System.out.println("Date: " + currentCommit.getTimestamp());
-            System.out.println("message: " + currentCommit.getMessage());
-            System.out.println("-----------------------------------------------");
+                // 2. 실제로 바뀌었는지 확인
+                Commit commit = CommitService.loadCommitFromCommitDirectory(commitId);
+                String previousCommitId = commit.getPreviousCommitId();
+                CommitSnapshot previousSnapshot = previousCommitId.isEmpty()
+                        ? CommitSnapshot.EMPTY : CommitService.loadCommitFromCommitDirectory(previousCommitId).getSnapshot();
+                if (HistoryIndex.touches(previousSnapshot, commit.getSnapshot(), targetPath)) {
+                    System.out.println("commit " + commit.getId());
+                    System.out.println("Date: " + commit.getTimestamp());
+                    System.out.println("message: " + commit.getMessage());
+                    System.out.println("-----------------------------------------------");
+                } else if (entry != null) {
+                    falsePositives++;
+                }
+                if (entry == null) {
+                    HistoryIndex.write(commit, previousSnapshot, false);
+                    indexed++;
+                }
+                commitId = previousCommitId;
+            }
+            System.out.println("[log] " + scanned + " commits, " + skipped + " skipped by index, "
+                    + falsePositives + " false positives" + (indexed > 0 ? ", " + indexed + " newly indexed" : ""));
+        }
+    }
+
+    // previousCommitId 를 따라가면서 커밋을 읽어 큐에 넣는다. 큐가 차면 출력이 따라올 때까지 기다림
+    private static class CommitPrefetcher extends Thread {
+        private static final Commit END = new Commit("", "", "", CommitSnapshot.EMPTY);
+
+        private final BlockingQueue<Commit> queue = new ArrayBlockingQueue<>(PREFETCH_DEPTH);
+        private final String startCommitId;
+        private volatile IOException failure;
+
+        CommitPrefetcher(String startCommitId) {
+            super("sfv-log-prefetch");
+            this.startCommitId = startCommitId;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                String commitId = startCommitId;
+                while (!commitId.isEmpty()) {
+                    Commit commit = CommitService.loadCommitFromCommitDirectory(commitId);
+                    queue.put(commit);
+                    commitId = commit.getPreviousCommitId(); // 이전 커밋으로 이동
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                queue.put(END);
+            } catch (InterruptedException ignored) {
+            }
+        }
 
-            // 이전 커밋으로 이동
-            String previousCommitId = currentCommit.getPreviousCommitId();
-            if (previousCommitId.isEmpty()) {
-                break;
+        // 다음 커밋. 끝이면 null
+        Commit next() throws IOException {
+            try {
+                Commit commit = queue.take();
+                if (commit == END) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return null;
+                }
+                return commit;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("log interrupted", e);
             }
-            currentCommit = CommitService.loadCommitFromCommitDirectory(previousCommitId);
         }
     }
 }
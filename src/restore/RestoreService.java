@@ -0,0 +1,150 @@
+package restore;
+
+import commit.CommitService;
+import commit.CommitSnapshot;
+import util.FileUtil;
+import util.OutputSink;
+import util.RepositoryLock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeSet;
+
+public class RestoreService {
+
+    /**
+     * 커밋의 일부 파일만 작업 디렉토리로 되돌린다.
+     * checkout 과 달리 작업 디렉토리를 검사하지 않고 (변경사항이 있어도 됨), HEAD 도 그대로 둔다.
+     * 1. 커밋 찾기, 스냅샷 읽기
+     * 2. 경로 해석 : 스냅샷은 경로 순으로 정렬되어 있으므로
+     *    - 파일 : indexOf
+     *    - 디렉토리 : lowerBound("dir/") ~ lowerBound("dir0") 범위 ('/' 다음 문자가 '0')
+     *    - glob : glob 문자 앞의 디렉토리 범위만 PathMatcher 로 검사
+     * 3. 오브젝트를 임시파일로 복사, 저장된 수정시간으로 맞춘 뒤 rename (병렬)
+     * HEAD 와 다른 커밋에서 되돌린 파일은 수정시간이 HEAD 와 다르므로 status 에 변경으로 나온다.
+     */
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    @SuppressWarnings("try")
+    public void restore(String partialCommitId, List<String> pathSpecs) throws IOException {
+        FileUtil.validateSfvRepository();
+        // 작업 디렉토리를 바꾸므로 checkout 처럼 다른 명령을 막는다
+        try (RepositoryLock ignored = RepositoryLock.exclusive()) {
+
+            // 1. 커밋 찾기
+            String commitId = FileUtil.findMatchingCommitId(partialCommitId);
+            CommitSnapshot snapshot = CommitService.loadCommitFromCommitDirectory(commitId).getSnapshot();
+
+            // 2. 경로 해석 (하나라도 맞는 항목이 없으면 아무것도 쓰지 않고 끝냄)
+            BitSet selected = new BitSet(snapshot.size());
+            for (String pathSpec : pathSpecs) {
+                if (!select(snapshot, normalize(pathSpec), selected)) {
+                    throw new FileSystemException("pathspec did not match any file in " + commitId.substring(0, 7) + ": " + pathSpec);
+                }
+            }
+
+            // 3. 상위 디렉토리를 먼저 한 번씩 만들고 (부모부터), 파일은 병렬로 복원
+            TreeSet<Path> directories = new TreeSet<>();
+            selected.stream().forEach(index -> {
+                Path parent = FileUtil.getRootPath().resolve(snapshot.getPath(index)).getParent();
+                if (parent != null) {
+                    directories.add(parent);
+                }
+            });
+            for (Path directory : directories) {
+                Files.createDirectories(directory);
+            }
+            try {
+                selected.stream().parallel().forEach(index -> {
+                    try {
+                        restoreFile(snapshot, index);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            System.out.println("[restore] " + commitId.substring(0, 7) + " : " + selected.cardinality() + " files restored");
+        }
+    }
+
+    // 명령행 경로를 스냅샷의 key 형식으로. "." 이나 루트는 "" (전체)
+    private static String normalize(String pathSpec) throws FileSystemException {
+        String normalized = Paths.get(pathSpec).normalize().toString();
+        if (Paths.get(pathSpec).isAbsolute() || normalized.equals("..") || normalized.startsWith("../")) {
+            throw new FileSystemException("path is outside of the repository: " + pathSpec);
+        }
+        return normalized;
+    }
+
+    // pathSpec 에 맞는 항목을 selected 에 표시한다. 하나도 없으면 false
+    private static boolean select(CommitSnapshot snapshot, String pathSpec, BitSet selected) {
+        // 1. 전체
+        if (pathSpec.isEmpty()) {
+            selected.set(0, snapshot.size());
+            return !snapshot.isEmpty();
+        }
+
+        // 2. 파일 또는 디렉토리
+        if (!containsGlob(pathSpec)) {
+            int index = snapshot.indexOf(pathSpec);
+            if (index >= 0) {
+                selected.set(index);
+                return true;
+            }
+            int from = snapshot.lowerBound(pathSpec + "/");
+            int to = snapshot.lowerBound(pathSpec + "0");
+            selected.set(from, to);
+            return from < to;
+        }
+
+        // 3. glob : glob 문자 앞까지의 디렉토리 범위만 훑는다
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pathSpec);
+        String prefix = literalPrefix(pathSpec);
+        int from = prefix.isEmpty() ? 0 : snapshot.lowerBound(prefix);
+        int to = prefix.isEmpty() ? snapshot.size() : snapshot.lowerBound(prefix.substring(0, prefix.length() - 1) + "0");
+        boolean[] matched = {false};
+        snapshot.forEach(from, to, (index, path) -> {
+            if (matcher.matches(Paths.get(path))) {
+                selected.set(index);
+                matched[0] = true;
+            }
+        });
+        return matched[0];
+    }
+
+    private static void restoreFile(CommitSnapshot snapshot, int index) throws IOException {
+        String path = snapshot.getPath(index);
+        OutputSink.item("restoring", "\trestoring " + path);
+        FileUtil.copyAtomically(FileUtil.getObjectPath(snapshot.getHash(index)), FileUtil.getRootPath().resolve(path),
+                FileTime.fromMillis(snapshot.getModifiedTime(index)));
+    }
+
+    private static boolean containsGlob(String pathSpec) {
+        for (int i = 0; i < pathSpec.length(); i++) {
+            if (GLOB_CHARS.indexOf(pathSpec.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 첫 glob 문자 앞의 디렉토리 부분 ("src/main/*.java" -> "src/main/"). 없으면 ""
+    private static String literalPrefix(String pathSpec) {
+        int firstGlob = pathSpec.length();
+        for (int i = 0; i < pathSpec.length(); i++) {
+            if (GLOB_CHARS.indexOf(pathSpec.charAt(i)) >= 0) {
+                firstGlob = i;
+                break;
+            }
+        }
+        return pathSpec.substring(0, pathSpec.lastIndexOf('/', firstGlob) + 1);
+    }
+}
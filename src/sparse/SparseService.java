@@ -0,0 +1,60 @@
+package sparse;
+
+import checkout.CheckoutService;
+import commit.ModifyDetector;
+import util.FileUtil;
+import util.RepositoryLock;
+import util.WorkTreeFilter;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.util.List;
+
+public class SparseService {
+
+    /**
+     * sparse checkout 패턴 관리.
+     * 패턴은 .sfv/sparse 에 한 줄에 하나씩 저장되고, checkout / status / commit 은 패턴 안의 경로만 다룬다.
+     * 패턴 밖의 파일은 커밋할 때 HEAD 의 항목이 그대로 이어진다.
+     */
+
+    private final CheckoutService checkoutService;
+
+    public SparseService(CheckoutService checkoutService) {
+        this.checkoutService = checkoutService;
+    }
+
+    // 패턴을 바꾸고 작업 디렉토리를 새 패턴에 맞춘다. 빈 리스트면 sparse 해제
+    @SuppressWarnings("try")
+    public void set(List<String> patterns) throws IOException {
+        FileUtil.validateSfvRepository();
+        try (RepositoryLock ignored = RepositoryLock.exclusive()) {
+
+            // 1. 변경사항이 있으면 안됨 (지워질 수도 있으므로)
+            WorkTreeFilter previousFilter = WorkTreeFilter.load();
+            if (!ModifyDetector.findModifiedFiles(previousFilter).isEmpty()) {
+                throw new FileSystemException("You have changes after commit. Please commit them first.");
+            }
+
+            // 2. HEAD 기준으로 작업 디렉토리 갱신
+            WorkTreeFilter nextFilter = WorkTreeFilter.of(patterns);
+            checkoutService.applySparsePatterns(previousFilter, nextFilter);
+
+            // 3. 갱신이 끝난 다음에 패턴 저장. 중간에 실패하면 이전 패턴이 남아있으므로 같은 명령을 다시 하면 이어서 맞춰진다
+            nextFilter.save();
+            System.out.println(nextFilter.isSparse() ? "[sparse] patterns updated." : "[sparse] disabled.");
+        }
+    }
+
+    public void list() throws IOException {
+        FileUtil.validateSfvRepository();
+        WorkTreeFilter filter = WorkTreeFilter.load();
+        if (!filter.isSparse()) {
+            System.out.println("sparse checkout is disabled");
+            return;
+        }
+        for (String pattern : filter.getPatterns()) {
+            System.out.println(pattern);
+        }
+    }
+}
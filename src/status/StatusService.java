@@ -2,39 +2,136 @@ package status;
 
 import commit.Commit;
 import commit.CommitService;
+import commit.CommitSnapshot;
 import commit.ModifyDetector;
+import commit.StatCache;
+import util.FileStat;
 import util.FileUtil;
+import util.OutputSink;
+import util.RepositoryLock;
+import util.StreamingIO;
+import util.WorkTreeFilter;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class StatusService {
 
     public void getStatus() throws IOException, NoSuchAlgorithmException {
+        getStatus(List.of());
+    }
+
+    public void getStatus(List<String> scopePaths) throws IOException, NoSuchAlgorithmException {
+        getStatus(scopePaths, false);
+    }
+
+    /**
+     * @param scopePaths 있으면 그 경로 아래만 검사한다
+     * @param verify     크기는 HEAD 와 같고 수정시간만 다른 파일은 해시해서 내용이 같으면 목록에서 빼고 StatCache 에 적어둔다
+     */
+    @SuppressWarnings("try")
+    public void getStatus(List<String> scopePaths, boolean verify) throws IOException, NoSuchAlgorithmException {
         FileUtil.validateSfvRepository();
+        try (RepositoryLock ignored = RepositoryLock.shared()) {
+            WorkTreeFilter filter = WorkTreeFilter.load().withScopes(scopePaths);
+
+            // 1. 현재 커밋 정보 가져오기
+            String head = FileUtil.getHEADValue();
+            Commit currentCommit = head.isEmpty() ? null : CommitService.loadCommitFromCommitDirectory(head);
 
-        // 1. 현재 커밋 정보 가져오기
-        String head = FileUtil.getHEADValue();
-        Commit currentCommit = head.isEmpty() ? null : CommitService.loadCommitFromCommitDirectory(head);
-
-        // 2. 변경된 파일 찾기
-        List<Path> modifiedFiles = ModifyDetector.findModifiedFiles();
-
-        // 3. 상태 출력
-        System.out.println("[status] status for commit: " + (currentCommit == null ? "none. this is first commit." :
-                currentCommit.getId().substring(0, 7) + " " + currentCommit.getMessage()));
-
-        if (modifiedFiles.isEmpty()) {
-            System.out.println("no changes detected");
-        } else {
-            System.out.println("new changes:");
-            for (Path file : modifiedFiles) {
-                // 상대 경로로 변환하여 출력
-                Path relativePath = FileUtil.getRootPath().relativize(file);
-                System.out.println("\tmodified: " + relativePath);
+            // 2. 변경된 파일 찾기
+            List<Path> modifiedFiles = ModifyDetector.findModifiedFiles(currentCommit, filter);
+            int touchedOnly = 0;
+            if (verify && currentCommit != null && !modifiedFiles.isEmpty()) {
+                int candidates = modifiedFiles.size();
+                modifiedFiles = verifyContent(currentCommit, modifiedFiles);
+                touchedOnly = candidates - modifiedFiles.size();
+            }
+
+            // 3. 상태 출력
+            System.out.println("[status] status for commit: " + (currentCommit == null ? "none. this is first commit." :
+                    currentCommit.getId().substring(0, 7) + " " + currentCommit.getMessage()));
+
+            if (touchedOnly > 0) {
+                System.out.println("[status] " + touchedOnly + " files only touched (content unchanged)");
+            }
+            if (modifiedFiles.isEmpty()) {
+                System.out.println("no changes detected");
+            } else {
+                System.out.println("new changes:");
+                CommitSnapshot headSnapshot = currentCommit == null ? CommitSnapshot.EMPTY : currentCommit.getSnapshot();
+                for (Path file : modifiedFiles) {
+                    // 상대 경로로 변환하여 출력
+                    Path relativePath = FileUtil.getRootPath().relativize(file);
+                    String renamedFrom = findRenamedFrom(headSnapshot, file, relativePath.normalize().toString());
+                    if (renamedFrom != null) {
+                        OutputSink.item("renamed", "\trenamed: " + renamedFrom + " -> " + relativePath);
+                    } else {
+                        OutputSink.item("modified", "\tmodified: " + relativePath);
+                    }
+                }
             }
         }
     }
+
+    /**
+     * 빌드 도구가 touch 만 한 파일처럼 크기는 같은데 수정시간만 바뀐 후보들을 병렬로 해시해서 HEAD 의 해시와 비교한다.
+     * 내용이 같은 파일은 지금의 크기/수정시간으로 StatCache 에 적어서, 다음 status/commit 은 다시 읽지 않게 한다.
+     * 크기가 다르거나 HEAD 에 없는 파일은 읽지 않는다.
+     * @return 실제로 내용이 바뀐 파일 (순서 유지)
+     */
+    private static List<Path> verifyContent(Commit currentCommit, List<Path> modifiedFiles) throws IOException {
+        CommitSnapshot headSnapshot = currentCommit.getSnapshot();
+        Map<String, FileStat> unchanged = new ConcurrentHashMap<>();
+        List<Path> changed = modifiedFiles.parallelStream()
+                .filter(file -> {
+                    String normalizedPath = FileUtil.getRootPath().relativize(file).normalize().toString();
+                    int headIndex = headSnapshot.indexOf(normalizedPath);
+                    if (headIndex < 0) {
+                        return true;
+                    }
+                    try {
+                        FileStat stat = FileUtil.stat(file);
+                        if (stat.size() != headSnapshot.getSize(headIndex)
+                                || !StreamingIO.hash(file).equals(headSnapshot.getHash(headIndex))) {
+                            return true;
+                        }
+                        // 해시하는 동안 다시 쓰인 파일이면 해시한 내용이 지금 stat 의 내용이라고 할 수 없다
+                        if (!FileUtil.stat(file).equals(stat)) {
+                            return true;
+                        }
+                        unchanged.put(normalizedPath, stat);
+                        return false;
+                    } catch (IOException e) {
+                        return true; // 읽을 수 없으면 바뀐 것으로 보고 그대로 보여준다
+                    }
+                })
+                .toList();
+
+        if (!unchanged.isEmpty()) {
+            StatCache.save(currentCommit, StatCache.load(currentCommit), unchanged);
+        }
+        return changed;
+    }
+
+    /**
+     * HEAD 에 없는 경로인데 장치/inode/크기/수정시간이 같은 HEAD 항목이 있고, 그 항목의 경로에는 이제 파일이 없으면
+     * 이름이 바뀐 (mv) 파일로 본다. 그 이전 경로, 아니면 null
+     */
+    private static String findRenamedFrom(CommitSnapshot headSnapshot, Path file, String normalizedPath) throws IOException {
+        if (!headSnapshot.hasFileKeys() || headSnapshot.indexOf(normalizedPath) >= 0) {
+            return null;
+        }
+        int index = headSnapshot.indexOfFile(FileUtil.stat(file));
+        if (index < 0) {
+            return null;
+        }
+        String previousPath = headSnapshot.getPath(index);
+        return Files.exists(FileUtil.getRootPath().resolve(previousPath)) ? null : previousPath;
+    }
 }
@@ -0,0 +1,97 @@
+package sync;
+
+import commit.Commit;
+import commit.CommitService;
+import util.FileUtil;
+import util.SfvConfig;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class SfvRepository {
+
+    /**
+     * push / pull 의 한쪽 리포지토리. 현재 리포지토리 또는 로컬(마운트된) 경로의 다른 sfv 리포지토리.
+     * 디렉토리 구조는 같으므로 FileUtil 의 경로를 그 리포지토리의 루트 기준으로 바꿔서 쓴다.
+     */
+
+    private final Path root;
+    private final boolean local;
+
+    private SfvRepository(Path root, boolean local) {
+        this.root = root;
+        this.local = local;
+    }
+
+    public static SfvRepository local() {
+        return new SfvRepository(FileUtil.getRootPath(), true);
+    }
+
+    public static SfvRepository open(Path root) throws IOException {
+        SfvRepository repository = new SfvRepository(root, false);
+        if (!Files.isDirectory(repository.resolve(FileUtil.getObjectsPath()))
+                || !Files.isDirectory(repository.resolve(FileUtil.getCommitPath("")))
+                || !Files.exists(repository.getHEADPath())) {
+            throw new FileSystemException("not an sfv repository: " + root);
+        }
+        if (Files.isSameFile(root, FileUtil.getRootPath())) {
+            throw new FileSystemException("cannot sync a repository with itself: " + root);
+        }
+        return repository;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Path getCommitPath(String commitId) {
+        return resolve(FileUtil.getCommitPath(commitId));
+    }
+
+    public Path getObjectPath(String hash) {
+        return resolve(FileUtil.getObjectPath(hash));
+    }
+
+    public Path getHistoryPath(String commitId) {
+        return resolve(FileUtil.getHistoryPath(commitId));
+    }
+
+    public Path getHEADPath() {
+        return resolve(FileUtil.getHEADPath());
+    }
+
+    public Path getLockPath() {
+        return resolve(FileUtil.getLockPath());
+    }
+
+    public String getHEADValue() throws IOException {
+        return Files.readString(getHEADPath()).trim();
+    }
+
+    public boolean hasCommit(String commitId) {
+        return Files.exists(getCommitPath(commitId));
+    }
+
+    public boolean hasObject(String hash) {
+        return Files.exists(getObjectPath(hash));
+    }
+
+    // 현재 리포지토리면 커밋 캐시를 거친다
+    public Commit loadCommit(String commitId) throws IOException {
+        if (local) {
+            return CommitService.loadCommitFromCommitDirectory(commitId);
+        }
+        return CommitService.readCommitFile(getCommitPath(commitId));
+    }
+
+    public boolean isDurable() throws IOException {
+        return SfvConfig.load(resolve(FileUtil.getConfigPath())).getBoolean(SfvConfig.CORE_DURABLE, false);
+    }
+
+    // 현재 리포지토리 기준 경로 (./.sfv/...) 를 이 리포지토리 기준으로
+    private Path resolve(Path localPath) {
+        return local ? localPath : root.resolve(localPath.normalize());
+    }
+}
@@ -0,0 +1,179 @@
+package sync;
+
+import checkout.CheckoutService;
+import commit.Commit;
+import commit.CommitSnapshot;
+import commit.ModifyDetector;
+import util.DurableBatch;
+import util.FileUtil;
+import util.RepositoryLock;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SyncService {
+
+    /**
+     * 다른 sfv 리포지토리 (로컬/마운트 경로) 와 히스토리를 주고받는다.
+     * 1. 보내는 쪽 HEAD 에서 previousCommitId 를 따라가면서 받는 쪽에 없는 커밋을 모은다
+     *    받는 쪽 HEAD 를 만나면 멈춤. 못 만나면 fast-forward 가 아니므로 거절
+     * 2. 그 커밋들이 참조하는 해시의 합집합 중 받는 쪽에 없는 오브젝트만 병렬로 복사
+     * 3. 커밋 파일 복사
+     * 4. 받는 쪽에서 새 HEAD 를 checkout (작업 디렉토리와 HEAD 를 같이 바꿈)
+     * 오브젝트 -> 커밋 -> HEAD 순서라서 중간에 실패해도 받는 쪽 HEAD 에서 닿는 오브젝트는 항상 존재한다.
+     * 보내는 쪽은 shared, 받는 쪽은 writer 로 잠그고 checkout 하는 동안만 exclusive. (RepositoryLock)
+     */
+
+    private final CheckoutService checkoutService;
+
+    public SyncService(CheckoutService checkoutService) {
+        this.checkoutService = checkoutService;
+    }
+
+    /**
+     * 현재 리포지토리의 히스토리를 target 으로 보내고, target 의 작업 디렉토리도 새 HEAD 로 checkout 한다.
+     * HEAD 만 바꾸면 target 의 작업 디렉토리가 HEAD 와 어긋나서, target 에서 status 가 옛 파일을 변경으로 보이고
+     * 다음 commit 이 받은 변경을 되돌려버린다. 그래서 target 에 커밋 안 된 변경사항이 있으면 아무것도 보내지 않고 거절한다.
+     */
+    @SuppressWarnings("try")
+    public void push(Path targetRoot) throws IOException {
+        FileUtil.validateSfvRepository();
+        SfvRepository target = SfvRepository.open(targetRoot);
+        try (RepositoryLock sourceLock = RepositoryLock.shared();
+             RepositoryLock targetLock = RepositoryLock.writer(target.getLockPath())) {
+            // 1. target 작업 디렉토리 검사 (target 을 루트로 보고)
+            boolean clean = FileUtil.withRoot(target.getRoot(), () -> ModifyDetector.findModifiedFiles().isEmpty());
+            if (!clean) {
+                throw new FileSystemException("Rejected: " + target.getRoot()
+                        + " has uncommitted changes in its working tree. Commit them there first.");
+            }
+
+            // 2. 커밋, 오브젝트 복사 후 target 에서 checkout (HEAD 도 checkout 이 바꾼다. writer 를 잡고 있어서 그 사이 안 바뀜)
+            String head = transfer(SfvRepository.local(), target, "push");
+            if (head != null) {
+                FileUtil.withRoot(target.getRoot(), () -> {
+                    try {
+                        checkoutService.checkout(head);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("push interrupted");
+                    }
+                    return null;
+                });
+                System.out.println("[push] " + target.getRoot() + " HEAD -> " + head.substring(0, 7));
+            }
+        }
+    }
+
+    // source 의 히스토리를 현재 리포지토리로 가져오고 새 HEAD 를 checkout 한다
+    @SuppressWarnings("try")
+    public void pull(Path sourceRoot) throws IOException, InterruptedException {
+        FileUtil.validateSfvRepository();
+        SfvRepository source = SfvRepository.open(sourceRoot);
+        try (RepositoryLock sourceLock = RepositoryLock.shared(source.getLockPath());
+             RepositoryLock targetLock = RepositoryLock.writer()) {
+            String head = transfer(source, SfvRepository.local(), "pull");
+            if (head != null) {
+                checkoutService.checkout(head); // 변경사항이 있으면 여기서 실패. 가져온 커밋/오브젝트는 남아있음
+            }
+        }
+    }
+
+    /**
+     * source 에만 있는 커밋과 오브젝트를 target 으로 복사한다. HEAD 는 바꾸지 않음
+     * @return target 이 가리켜야 할 새 HEAD. 이미 최신이면 null
+     */
+    private static String transfer(SfvRepository source, SfvRepository target, String label) throws IOException {
+        String sourceHead = source.getHEADValue();
+        String targetHead = target.getHEADValue();
+        if (sourceHead.isEmpty() || sourceHead.equals(targetHead)) {
+            System.out.println("[" + label + "] Already up to date.");
+            return null;
+        }
+        long start = System.currentTimeMillis();
+
+        // 1. target 에 없는 커밋 찾기 (최신 -> 오래된 순)
+        List<Commit> missingCommits = new ArrayList<>();
+        boolean fastForward = targetHead.isEmpty();
+        for (String commitId = sourceHead; !commitId.isEmpty(); ) {
+            if (commitId.equals(targetHead)) {
+                fastForward = true;
+                break;
+            }
+            Commit commit = source.loadCommit(commitId);
+            if (!target.hasCommit(commitId)) {
+                missingCommits.add(commit);
+            }
+            commitId = commit.getPreviousCommitId();
+        }
+        if (!fastForward) {
+            throw new FileSystemException("Rejected (non-fast-forward): " + targetHead.substring(0, 7)
+                    + " is not an ancestor of " + sourceHead.substring(0, 7));
+        }
+
+        // 2. 필요한 오브젝트 = 없는 커밋들이 참조하는 해시의 합집합 - target 에 이미 있는 것
+        Set<String> referenced = ConcurrentHashMap.newKeySet();
+        for (Commit commit : missingCommits) {
+            CommitSnapshot snapshot = commit.getSnapshot();
+            for (int i = 0; i < snapshot.size(); i++) {
+                referenced.add(snapshot.getHash(i));
+            }
+        }
+        List<String> missingObjects = referenced.parallelStream()
+                .filter(hash -> !target.hasObject(hash))
+                .toList();
+        long planEnd = System.currentTimeMillis();
+
+        // 3. 오브젝트 복사 (병렬), 커밋 복사. durable 이면 각각 모아서 fsync 후 rename
+        boolean durable = target.isDurable();
+        LongAdder copiedBytes = new LongAdder();
+        DurableBatch objectBatch = durable ? new DurableBatch() : null;
+        try {
+            missingObjects.parallelStream().forEach(hash -> {
+                try {
+                    Path sourceObject = source.getObjectPath(hash);
+                    FileUtil.copyAtomically(sourceObject, target.getObjectPath(hash), objectBatch);
+                    copiedBytes.add(Files.size(sourceObject));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw new IOException("Failed to copy objects : " + e.getCause().getMessage(), e.getCause());
+        }
+        if (objectBatch != null) {
+            objectBatch.flush();
+        }
+
+        DurableBatch commitBatch = durable ? new DurableBatch() : null;
+        for (Commit commit : missingCommits) {
+            // 경로 히스토리 색인도 있으면 같이 (없으면 받는 쪽에서 log -- <path> 때 만들어짐)
+            Path sourceHistory = source.getHistoryPath(commit.getId());
+            if (Files.exists(sourceHistory)) {
+                Path targetHistory = target.getHistoryPath(commit.getId());
+                Files.createDirectories(targetHistory.getParent());
+                FileUtil.copyAtomically(sourceHistory, targetHistory, commitBatch);
+            }
+            FileUtil.copyAtomically(source.getCommitPath(commit.getId()), target.getCommitPath(commit.getId()), commitBatch);
+        }
+        if (commitBatch != null) {
+            commitBatch.flush();
+        }
+        long end = System.currentTimeMillis();
+
+        System.out.println("[" + label + "] " + missingCommits.size() + " commits, " + missingObjects.size()
+                + " objects (" + copiedBytes.sum() + " bytes) copied, " + (referenced.size() - missingObjects.size())
+                + " objects already present");
+        System.out.println("plan time : " + (planEnd - start) + ", copy time : " + (end - planEnd));
+        return sourceHead;
+    }
+}
@@ -0,0 +1,248 @@
+package tune;
+
+import checkout.CheckoutService;
+import commit.Commit;
+import commit.CommitService;
+import commit.CommitSnapshot;
+import commit.ModifyDetector;
+import commit.SpillSorter;
+import util.FileUtil;
+import util.OutputSink;
+import util.RepositoryLock;
+import util.SfvConfig;
+import util.Tuning;
+import util.WorkTreeFilter;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class TuneService {
+
+    /**
+     * 이 기계, 이 파일시스템에서 가장 빠른 방식과 병렬도를 골라서 .sfv/config 에 저장한다.
+     * HEAD 커밋에서 파일을 골라 .sfv/tmp/tune-<UUID> 에 작은 리포지토리 사본을 만들고 (같은 파일시스템이어야 의미가 있음)
+     * FileUtil.withRoot 로 그 사본을 리포지토리로 보고 실제 서비스 코드를 후보 설정마다 돌려서 시간을 잰다.
+     * 1. checkout : 빈 작업 디렉토리에 표본 커밋을 복원 (v1 ~ v4, 스레드 수, 청크 크기)
+     * 2. status   : 복원된 사본에서 변경 감지 (v1 ~ v3, 스레드 수)
+     * 3. commit   : 오브젝트를 비운 상태에서 해시 + 저장 (v2 ~ v5, 스레드 수)
+     * 후보를 다 곱하면 너무 많으므로 방식 (기본 병렬도) -> 스레드 수 -> 청크 크기 순서로 하나씩 고른다.
+     * 후보마다 ROUNDS 번 돌려서 가장 빠른 시간으로 비교한다. 원래 작업 디렉토리와 오브젝트는 건드리지 않는다.
+     */
+
+    public static final int DEFAULT_SAMPLE_FILES = 2000;
+    private static final long SAMPLE_BYTES = 256L * 1024 * 1024;
+    private static final int ROUNDS = 2;
+    private static final int[] CHUNK_SIZES = {10, 50, 100, 500, 1000};
+
+    private final CheckoutService checkoutService;
+
+    public TuneService(CheckoutService checkoutService) {
+        this.checkoutService = checkoutService;
+    }
+
+    private interface Pass {
+        void run(Tuning tuning) throws IOException;
+    }
+
+    @SuppressWarnings("try")
+    public void tune(int sampleFiles, boolean save) throws IOException {
+        FileUtil.validateSfvRepository();
+        Tuning[] best;
+        try (RepositoryLock ignored = RepositoryLock.shared()) {
+            String head = FileUtil.getHEADValue();
+            if (head.isEmpty()) {
+                throw new FileSystemException("Nothing to tune with. Make a commit first.");
+            }
+
+            // 1. 표본 고르기 (원래 리포지토리 기준 경로로 오브젝트 위치도 같이)
+            CommitSnapshot sample = sample(CommitService.loadCommitFromCommitDirectory(head).getSnapshot(), sampleFiles);
+            if (sample.isEmpty()) {
+                throw new FileSystemException("Nothing to tune with. HEAD has no readable objects.");
+            }
+            Map<String, Path> sourceObjects = new HashMap<>();
+            long sampleBytes = 0;
+            for (int i = 0; i < sample.size(); i++) {
+                sourceObjects.put(sample.getHash(i), FileUtil.getObjectPath(sample.getHash(i)));
+                sampleBytes += sample.getSize(i);
+            }
+            System.out.println("[tune] sample : " + sample.size() + " files, " + sampleBytes + " bytes");
+
+            Path scratch = FileUtil.getTmpPath().resolve("tune-" + UUID.randomUUID());
+            Files.createDirectories(scratch);
+            try (OutputSink quiet = OutputSink.open(OutputSink.Mode.QUIET)) { // 복원/삭제하는 파일 목록은 출력하지 않음
+                best = FileUtil.withRoot(scratch, () -> calibrate(sample, sourceObjects));
+            } finally {
+                deleteRecursively(scratch);
+            }
+        }
+
+        // 2. 결과 저장. config 를 읽고-고치고-쓰는 동안은 다른 config set / tune 과 겹치지 않도록 writer 를 잡는다
+        //    (shared 는 exclusive 로 올릴 수 없으므로 측정이 끝나고 놓은 다음에)
+        System.out.println("[tune] checkout : " + best[0]);
+        System.out.println("[tune] status   : " + best[1]);
+        System.out.println("[tune] commit   : " + best[2]);
+        if (save) {
+            try (RepositoryLock ignored = RepositoryLock.writer()) {
+                SfvConfig config = SfvConfig.load();
+                best[0].saveTo(config, SfvConfig.CHECKOUT);
+                best[1].saveTo(config, SfvConfig.STATUS);
+                best[2].saveTo(config, SfvConfig.COMMIT);
+                config.save();
+            }
+            System.out.println("[tune] saved to " + FileUtil.getConfigPath());
+        }
+    }
+
+    // 사본 안에서 실행된다 (FileUtil 의 경로가 모두 사본 기준)
+    private Tuning[] calibrate(CommitSnapshot sample, Map<String, Path> sourceObjects) throws IOException {
+        FileUtil.initializeDotSfvDirectory();
+        copyObjects(sourceObjects);
+        Commit sampleCommit = new Commit("tune", "tune", "", sample);
+
+        // 1. checkout : 복원 후 다시 비우기 (비우는 시간은 재지 않음)
+        checkoutService.updateWorkingTree(CommitSnapshot.EMPTY, sample, CheckoutService.DEFAULT_TUNING); // 캐시 데우기
+        checkoutService.updateWorkingTree(sample, CommitSnapshot.EMPTY, CheckoutService.DEFAULT_TUNING);
+        Tuning bestCheckout = search("checkout", List.of(
+                        new Tuning("v1", 0, 0),
+                        new Tuning("v2", 0, 0),
+                        new Tuning("v3", CheckoutService.DEFAULT_TUNING.threads(), 0),
+                        CheckoutService.DEFAULT_TUNING),
+                tuning -> checkoutService.updateWorkingTree(CommitSnapshot.EMPTY, sample, tuning),
+                () -> checkoutService.updateWorkingTree(sample, CommitSnapshot.EMPTY, CheckoutService.DEFAULT_TUNING));
+        checkoutService.updateWorkingTree(CommitSnapshot.EMPTY, sample, bestCheckout);
+
+        // 2. status : 복원된 그대로 (바뀐 파일 없음) 검사
+        Tuning bestStatus = search("status", List.of(
+                        new Tuning("v1", 0, 0),
+                        new Tuning("v2", 0, 0),
+                        new Tuning("v3", 11, 0)),
+                tuning -> {
+                    if (!ModifyDetector.findModifiedFiles(sampleCommit, WorkTreeFilter.load(), tuning).isEmpty()) {
+                        throw new IOException("tune : unexpected changes in scratch copy (" + tuning + ")");
+                    }
+                }, null);
+
+        // 3. commit : 매번 오브젝트를 비우고 모든 파일을 해시 + 저장
+        WorkTreeFilter filter = WorkTreeFilter.load();
+        Set<Path> files = new HashSet<>(filter.walk());
+        Tuning bestCommit = search("commit", List.of(
+                        new Tuning("v2", 0, 0),
+                        new Tuning("v3", CommitService.DEFAULT_TUNING.threads(), 0),
+                        new Tuning("v4", CommitService.DEFAULT_TUNING.threads(), 0),
+                        CommitService.DEFAULT_TUNING),
+                tuning -> {
+                    if (tuning.strategy().equals("v5")) { // 파일 목록 없이 walk 부터 (walk 시간도 포함)
+                        CommitService.collectSnapshotPipelined(null, filter, tuning, SpillSorter.DEFAULT_BUFFER_SIZE);
+                    } else {
+                        CommitService.getFileMetadata(files, CommitSnapshot.EMPTY, tuning);
+                    }
+                },
+                TuneService::clearObjects);
+
+        return new Tuning[]{bestCheckout, bestStatus, bestCommit};
+    }
+
+    private interface Reset {
+        void run() throws IOException;
+    }
+
+    // 방식 -> 스레드 수 -> 청크 크기 순으로 고른다 (0 인 값은 그 방식이 쓰지 않는 값이므로 건너뜀)
+    private static Tuning search(String label, List<Tuning> strategies, Pass pass, Reset reset) throws IOException {
+        Tuning best = pickFastest(label, strategies, pass, reset);
+        if (best.threads() > 0) {
+            List<Tuning> candidates = new ArrayList<>();
+            for (int threads : threadCandidates()) {
+                candidates.add(new Tuning(best.strategy(), threads, best.chunkSize()));
+            }
+            best = pickFastest(label, candidates, pass, reset);
+        }
+        if (best.chunkSize() > 0) {
+            List<Tuning> candidates = new ArrayList<>();
+            for (int chunkSize : CHUNK_SIZES) {
+                candidates.add(new Tuning(best.strategy(), best.threads(), chunkSize));
+            }
+            best = pickFastest(label, candidates, pass, reset);
+        }
+        return best;
+    }
+
+    // 후보마다 ROUNDS 번 실행해서 가장 빠른 시간. reset 은 매 실행 전에 (시간 제외)
+    private static Tuning pickFastest(String label, List<Tuning> candidates, Pass pass, Reset reset) throws IOException {
+        Tuning best = null;
+        long bestNanos = Long.MAX_VALUE;
+        for (Tuning candidate : candidates) {
+            long fastest = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                if (reset != null) {
+                    reset.run();
+                }
+                long start = System.nanoTime();
+                pass.run(candidate);
+                fastest = Math.min(fastest, System.nanoTime() - start);
+            }
+            System.out.printf("\t%-8s %-24s %8.1f ms%n", label, candidate, fastest / 1_000_000.0);
+            if (fastest < bestNanos) {
+                bestNanos = fastest;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    // 스냅샷 전체에서 일정 간격으로 고른다. 오브젝트가 없는 항목은 건너뛰고, 전체 크기는 SAMPLE_BYTES 까지
+    private static CommitSnapshot sample(CommitSnapshot snapshot, int sampleFiles) {
+        int stride = Math.max(1, snapshot.size() / Math.max(1, sampleFiles));
+        CommitSnapshot.Builder builder = new CommitSnapshot.Builder(Math.min(snapshot.size(), sampleFiles));
+        long[] state = {0, 0}; // 고른 개수, 크기 합
+        snapshot.forEach((index, path) -> {
+            if (index % stride != 0 || state[0] >= sampleFiles) {
+                return;
+            }
+            long size = snapshot.getSize(index);
+            if ((state[0] > 0 && state[1] + size > SAMPLE_BYTES)
+                    || !Files.exists(FileUtil.getObjectPath(snapshot.getHash(index)))) {
+                return;
+            }
+            builder.add(path, size, snapshot.getModifiedTime(index), snapshot.getHashBytes(index), 0);
+            state[0]++;
+            state[1] += size;
+        });
+        return builder.build();
+    }
+
+    private static List<Integer> threadCandidates() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        TreeSet<Integer> counts = new TreeSet<>(List.of(2, 4, 8, 16, 32, cores, cores * 2));
+        counts.removeIf(count -> count > 64);
+        return new ArrayList<>(counts);
+    }
+
+    private static void copyObjects(Map<String, Path> sourceObjects) throws IOException {
+        for (Map.Entry<String, Path> entry : sourceObjects.entrySet()) {
+            Files.copy(entry.getValue(), FileUtil.getObjectPath(entry.getKey()));
+        }
+    }
+
+    private static void clearObjects() throws IOException {
+        try (var stream = Files.list(FileUtil.getObjectsPath())) {
+            for (Path object : stream.toList()) {
+                Files.delete(object);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (var stream = Files.walk(directory)) {
+            stream.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    System.err.println("Warning: Could not delete " + path);
+                }
+            });
+        }
+    }
+}
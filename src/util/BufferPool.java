@@ -0,0 +1,39 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class BufferPool {
+
+    /**
+     * 같은 크기의 direct ByteBuffer 를 재사용하기 위한 풀.
+     * direct 버퍼는 만들고 해제하는 비용이 크고 GC 로 바로 회수되지 않으므로 파일마다 새로 만들지 않는다.
+     * 풀이 비어있으면 새로 만들고, 반납할 때 풀이 가득 차 있으면 그냥 버린다. (동시 사용량이 많을 때만 늘어남)
+     */
+
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,72 @@
+package util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class DurableBatch {
+
+    /**
+     * 임시파일로 써둔 파일들을 모아서 한 번에 디스크에 반영한다.
+     * 파일마다 fsync 를 하면 수만 개 파일 커밋에서 처리량이 크게 떨어지므로
+     * 1. 임시파일 fsync 를 병렬로 한꺼번에 (파일시스템 저널이 묶어서 처리)
+     * 2. 최종 이름으로 rename
+     * 3. rename 이 일어난 디렉토리마다 한 번씩 fsync
+     * 순서로 처리한다. 1 이 끝나기 전에는 최종 이름이 보이지 않으므로 잘린 파일이 남지 않는다.
+     */
+
+    private record Pending(Path temp, Path target) {
+    }
+
+    private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+
+    public void stage(Path temp, Path target) {
+        pending.add(new Pending(temp, target));
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    public void flush() throws IOException {
+        List<Pending> batch = new ArrayList<>();
+        Pending next;
+        while ((next = pending.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // 1. 임시파일 내용 fsync (병렬)
+        try {
+            batch.parallelStream().forEach(item -> {
+                try (FileChannel channel = FileChannel.open(item.temp(), StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // 2. rename
+        Set<Path> directories = ConcurrentHashMap.newKeySet();
+        for (Pending item : batch) {
+            FileUtil.moveAtomically(item.temp(), item.target());
+            directories.add(item.target().toAbsolutePath().getParent());
+        }
+
+        // 3. 디렉토리 fsync
+        for (Path directory : directories) {
+            FileUtil.syncDirectory(directory);
+        }
+    }
+}
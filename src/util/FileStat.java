@@ -0,0 +1,12 @@
+package util;
+
+/**
+ * stat 한 번으로 얻는 파일 정보.
+ * device, inode 는 unix 파일시스템에서만 채워지고 그 외에는 0. (inode 가 0 이면 fileKey 없음)
+ */
+public record FileStat(long size, long modifiedTime, long device, long inode) {
+
+    public boolean hasFileKey() {
+        return inode != 0;
+    }
+}
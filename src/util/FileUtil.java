@@ -1,13 +1,20 @@
 package util;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.Files;
-import java.nio.file.FileSystemException;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class FileUtil {
@@ -16,16 +23,61 @@ public class FileUtil {
     private static final String HEAD = "HEAD";
     private static final String COMMIT = "commit";
     private static final String OBJECTS = "objects";
+    private static final String DAEMON_SOCKET = "daemon.sock";
+    private static final String SPARSE = "sparse";
+    private static final String CONFIG = "config";
+    private static final String TMP = "tmp";
+    private static final String HISTORY = "history";
+    private static final String LOCK = "lock";
+    private static final String STATCACHE = "statcache";
+    private static final String TEMP_PREFIX = ".tmp-";
 
-    private static final Path rootPath = Paths.get(".");
-    private static final Path dotSfvPath = rootPath.resolve(DOT_SFV);
-    private static final Path commitsPath = dotSfvPath.resolve(COMMIT);
-    private static final Path objectsPath = dotSfvPath.resolve(OBJECTS);
+    // 보통은 현재 디렉토리. withRoot 로 잠깐 바뀐다 : sfv tune 이 임시 사본에서 측정하는 동안, push 가 대상 리포지토리의
+    // 작업 디렉토리를 검사하고 checkout 하는 동안. 프로세스 전체의 값이므로 데몬에서도 명령은 한 번에 하나씩 실행해야 한다
+    private static volatile Path rootPath = Paths.get(".");
+    private static volatile Path dotSfvPath = rootPath.resolve(DOT_SFV);
+    private static volatile Path commitsPath = dotSfvPath.resolve(COMMIT);
+    private static volatile Path objectsPath = dotSfvPath.resolve(OBJECTS);
+
+    // 데몬 모드에서만 사용. 이미 저장된 오브젝트 해시 목록 (null 이면 비활성)
+    private static volatile Set<String> objectIndex;
+
+    // durable 모드에서 커밋하는 동안 쓰인 오브젝트들. (null 이면 바로 rename)
+    private static volatile DurableBatch durableBatch;
 
     public static Path getRootPath() {
         return rootPath;
     }
 
+    public interface RootAction<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * root 를 리포지토리 루트로 보고 action 을 실행한 뒤 원래 루트로 되돌린다.
+     * 모든 서비스가 FileUtil 의 경로를 쓰므로 그대로 다른 디렉토리에서 돌릴 수 있다. (명령은 한 번에 하나씩 실행된다고 가정)
+     * 데몬의 오브젝트 목록은 원래 리포지토리 것이므로 그동안 끈다.
+     */
+    public static <T> T withRoot(Path root, RootAction<T> action) throws IOException {
+        Path previousRoot = rootPath;
+        Set<String> previousIndex = objectIndex;
+        setRoot(root);
+        objectIndex = null;
+        try {
+            return action.run();
+        } finally {
+            setRoot(previousRoot);
+            objectIndex = previousIndex;
+        }
+    }
+
+    private static void setRoot(Path root) {
+        rootPath = root;
+        dotSfvPath = root.resolve(DOT_SFV);
+        commitsPath = dotSfvPath.resolve(COMMIT);
+        objectsPath = dotSfvPath.resolve(OBJECTS);
+    }
+
     public static Path getDotSfvPath() {
         return dotSfvPath;
     }
@@ -38,6 +90,42 @@ public class FileUtil {
         return objectsPath.resolve(hash);
     }
 
+    public static Path getObjectsPath() {
+        return objectsPath;
+    }
+
+    public static Path getDaemonSocketPath() {
+        return dotSfvPath.resolve(DAEMON_SOCKET);
+    }
+
+    public static Path getSparsePath() {
+        return dotSfvPath.resolve(SPARSE);
+    }
+
+    public static Path getConfigPath() {
+        return dotSfvPath.resolve(CONFIG);
+    }
+
+    // 커밋별 경로 히스토리 색인 (.sfv/history/<커밋ID>)
+    public static Path getHistoryPath(String commitId) {
+        return dotSfvPath.resolve(HISTORY).resolve(commitId);
+    }
+
+    // 프로세스 간 잠금 파일 (RepositoryLock)
+    public static Path getLockPath() {
+        return dotSfvPath.resolve(LOCK);
+    }
+
+    // 수정시간만 바뀐 (내용은 HEAD 와 같은) 파일 목록 (StatCache)
+    public static Path getStatCachePath() {
+        return dotSfvPath.resolve(STATCACHE);
+    }
+
+    // 커밋 도중 정렬용 임시 파일 등을 두는 곳. (.sfv/tmp)
+    public static Path getTmpPath() {
+        return dotSfvPath.resolve(TMP);
+    }
+
     public static void initializeDotSfvDirectory() throws FileSystemException, IOException {
         if (Files.exists(dotSfvPath)) {
             throw new FileSystemException("sfv repository already exists: " + dotSfvPath);
@@ -55,21 +143,218 @@ public class FileUtil {
         }
     }
 
+    public static Path getHEADPath() {
+        return dotSfvPath.resolve(HEAD);
+    }
+
     public static String getHEADValue() throws IOException {
         return Files.readString(dotSfvPath.resolve(HEAD)).trim();
     }
 
     public static void updateHEADValue(String value) throws IOException {
-        Files.writeString(dotSfvPath.resolve(HEAD), value);
+        updateHEADValue(value, false);
+    }
+
+    // HEAD 를 제자리에서 덮어쓰지 않고 임시파일 + rename 으로 바꾼다. durable 이면 fsync 까지
+    public static void updateHEADValue(String value, boolean durable) throws IOException {
+        writeAtomically(dotSfvPath.resolve(HEAD), value.getBytes(), durable);
     }
 
     public static String calculateFileHash(Path file) throws IOException, NoSuchAlgorithmException {
-        byte[] fileContent = Files.readAllBytes(file);
-        return HashUtil.sha1(fileContent);
+        return StreamingIO.hash(file);
+    }
+
+    /**
+     * 파일을 오브젝트로 저장하고 해시를 돌려준다.
+     * 오브젝트 디렉토리의 임시파일로 복사하면서 해시를 같이 계산하고 (한 번만 읽음), 끝나면 해시 이름으로 rename 한다.
+     * 이미 있는 오브젝트면 임시파일만 지운다. durable 모드면 rename 은 finishDurableBatch 때 한다.
+     */
+    public static String storeObject(Path file) throws IOException {
+        Path temp = objectsPath.resolve(TEMP_PREFIX + "object-" + UUID.randomUUID());
+        String hash;
+        try {
+            hash = StreamingIO.copyAndHash(file, temp);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Path target = objectsPath.resolve(hash);
+        if (hasObject(hash)) {
+            Files.deleteIfExists(temp); // 내용 주소 기반이므로 같은 해시는 다시 쓸 필요 없음
+            return hash;
+        }
+        DurableBatch batch = durableBatch;
+        if (batch != null) {
+            batch.stage(temp, target);
+        } else {
+            moveAtomically(temp, target);
+        }
+        Set<String> index = objectIndex;
+        if (index != null) {
+            index.add(hash);
+        }
+        return hash;
+    }
+
+    /**
+     * 오브젝트가 디스크에 있는지. 인덱스는 없는 쪽만 믿는다.
+     * 인덱스에 없으면 파일을 확인하지 않고 false, 인덱스에 있어도 파일을 확인해서 (지워졌을 수 있음) 없으면 인덱스에서 뺀다
+     */
+    public static boolean hasObject(String hash) {
+        Set<String> index = objectIndex;
+        if (index != null && !index.contains(hash)) {
+            return false;
+        }
+        if (Files.exists(objectsPath.resolve(hash))) {
+            return true;
+        }
+        if (index != null) {
+            index.remove(hash);
+        }
+        return false;
     }
 
     public static void saveObject(String hash, byte[] content) throws IOException {
-        Files.write(objectsPath.resolve(hash), content);
+        if (hasObject(hash)) {
+            return; // 내용 주소 기반이므로 같은 해시는 다시 쓸 필요 없음
+        }
+        storeAtomically(objectsPath.resolve(hash), content, durableBatch);
+        Set<String> index = objectIndex;
+        if (index != null) {
+            index.add(hash);
+        }
+    }
+
+    // 오브젝트 디렉토리를 한 번 읽어서 메모리에 올려둔다. 이후 없는 오브젝트는 디스크를 보지 않고 바로 쓴다.
+    public static void enableObjectIndex() throws IOException {
+        Set<String> index = ConcurrentHashMap.newKeySet();
+        try (var stream = Files.list(objectsPath)) {
+            stream.map(path -> path.getFileName().toString()).forEach(index::add);
+        }
+        objectIndex = index;
+    }
+
+    // gc 등으로 오브젝트가 지워졌을 때 인덱스에서도 빼준다.
+    public static void forgetObject(String hash) {
+        Set<String> index = objectIndex;
+        if (index != null) {
+            index.remove(hash);
+        }
+    }
+
+    // 커밋 동안 saveObject 가 쓰는 오브젝트를 모아뒀다가 finishDurableBatch 에서 한 번에 fsync 한다
+    public static void beginDurableBatch() {
+        durableBatch = new DurableBatch();
+    }
+
+    public static void finishDurableBatch() throws IOException {
+        DurableBatch batch = durableBatch;
+        durableBatch = null;
+        if (batch != null) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * target 과 같은 디렉토리에 임시파일로 쓴 뒤 rename 한다. 중간에 죽어도 target 이 잘린 채로 남지 않는다.
+     * batch 가 있으면 rename 은 batch.flush() 때 fsync 후에 한다.
+     */
+    public static void storeAtomically(Path target, byte[] content, DurableBatch batch) throws IOException {
+        Path temp = createTempPath(target);
+        try {
+            Files.write(temp, content);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (batch != null) {
+            batch.stage(temp, target);
+        } else {
+            moveAtomically(temp, target);
+        }
+    }
+
+    // 이미 있는 파일을 target 으로 복사. (다른 리포지토리의 오브젝트, 커밋 파일 등) storeAtomically 와 같은 방식
+    public static void copyAtomically(Path source, Path target, DurableBatch batch) throws IOException {
+        Path temp = createTempPath(target);
+        try {
+            Files.copy(source, temp);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (batch != null) {
+            batch.stage(temp, target);
+        } else {
+            moveAtomically(temp, target);
+        }
+    }
+
+    // 작업 디렉토리에 되돌려 놓는 파일용. 임시파일의 수정시간까지 맞춘 다음 rename 하므로 반쯤 쓴 파일이 보이지 않는다
+    public static void copyAtomically(Path source, Path target, FileTime modifiedTime) throws IOException {
+        Path temp = createTempPath(target);
+        try {
+            Files.copy(source, temp);
+            Files.setLastModifiedTime(temp, modifiedTime);
+            moveAtomically(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // 커밋 파일, HEAD 처럼 한 개씩 쓰는 파일용. sync 면 파일과 디렉토리를 바로 fsync 한다
+    public static void writeAtomically(Path target, byte[] content, boolean sync) throws IOException {
+        writeAtomically(target, sync, out -> out.write(content));
+    }
+
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    // 내용을 메모리에 다 만들어두지 않고 임시파일에 바로 써 나간다
+    public static void writeAtomically(Path target, boolean sync, ContentWriter writer) throws IOException {
+        Path temp = createTempPath(target);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+                writer.writeTo(out);
+                out.flush();
+                if (sync) {
+                    channel.force(true);
+                }
+            }
+            moveAtomically(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (sync) {
+            syncDirectory(target.toAbsolutePath().getParent());
+        }
+    }
+
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // 디렉토리 fsync 를 지원하지 않는 플랫폼 (Windows 등)
+        }
+    }
+
+    private static Path createTempPath(Path target) {
+        return target.resolveSibling(TEMP_PREFIX + target.getFileName() + "-" + UUID.randomUUID());
+    }
+
+    public static boolean isTempFile(Path path) {
+        return path.getFileName().toString().startsWith(TEMP_PREFIX);
     }
 
     public static long getFileSize(Path file) throws IOException {
@@ -80,11 +365,26 @@ public class FileUtil {
         return Files.getLastModifiedTime(file).toMillis();
     }
 
+    // 크기, 수정시간, 장치/inode 번호를 한 번에. unix 속성을 못 읽는 파일시스템이면 device, inode 는 0
+    public static FileStat stat(Path file) throws IOException {
+        try {
+            Map<String, Object> attributes = Files.readAttributes(file, "unix:size,lastModifiedTime,dev,ino");
+            return new FileStat((Long) attributes.get("size"),
+                    ((FileTime) attributes.get("lastModifiedTime")).toMillis(),
+                    (Long) attributes.get("dev"),
+                    (Long) attributes.get("ino"));
+        } catch (UnsupportedOperationException e) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new FileStat(attributes.size(), attributes.lastModifiedTime().toMillis(), 0, 0);
+        }
+    }
+
     public static List<String> getAllCommitIds() throws IOException {
         List<String> commitIds = new ArrayList<>();
         if (Files.exists(commitsPath)) {
             try (var stream = Files.list(commitsPath)) {
                 stream.filter(Files::isRegularFile)
+                    .filter(path -> !isTempFile(path))
                     .map(path -> path.getFileName().toString())
                     .forEach(commitIds::add);
             }
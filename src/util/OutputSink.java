@@ -0,0 +1,232 @@
+package util;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class OutputSink implements Closeable {
+
+    /**
+     * 명령 하나가 실행되는 동안 표준출력을 대신 받아서 쓰는 곳.
+     * 워커 스레드들이 파일마다 System.out.println 을 부르면 PrintStream 의 락에서 줄을 서게 되므로
+     * 파일별 출력 (item) 은 락 없는 큐에 넣기만 하고, 쓰기 스레드 하나가 큰 버퍼로 모아서 쓴다.
+     * 열려있는 동안 System.out, System.err 도 같은 큐로 가도록 바꿔두기 때문에 일반 출력, 오류 출력과 순서가 섞이지 않는다.
+     * (오류 출력은 쓰기 스레드가 그때까지의 표준출력을 flush 한 다음 원래 표준에러로 씀)
+     * 쓰기 스레드는 큐가 비면 잠들고, 잠들어 있을 때만 넣는 쪽이 깨운다. (flush, 진행 표시할 시간이 되면 스스로 깸)
+     * (데몬에서는 요청마다 바꿔둔 System.out, System.err 를 그대로 받아서 씀)
+     *
+     * 모드
+     *   VERBOSE  : 파일별 출력 (기본)
+     *   QUIET    : 파일별 출력 없음
+     *   SUMMARY  : 파일별 출력 대신 끝에 종류별 개수
+     *   PROGRESS : 파일별 출력 대신 표준에러에 진행 상황을 PROGRESS_INTERVAL_MS 마다 한 줄로 덮어씀
+     */
+
+    public enum Mode {
+        VERBOSE, QUIET, SUMMARY, PROGRESS
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long FLUSH_INTERVAL_MS = 50;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+    private static final byte[] STOP = new byte[0];
+
+    // 표준에러로 가야 하는 내용
+    private record ErrorChunk(byte[] bytes) {
+    }
+
+    private static volatile OutputSink current;
+
+    private final Mode mode;
+    private final OutputSink previous;
+    private final PrintStream originalOut;
+    private final PrintStream originalErr;
+    private final OutputStream out;
+    private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>(); // byte[] 또는 ErrorChunk
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+    private final Thread writer;
+    private volatile IOException failure;
+    private volatile boolean idle = false; // 쓰기 스레드가 잠들려는 중이거나 자는 중
+    private boolean progressShown = false;
+
+    private OutputSink(Mode mode) {
+        this.mode = mode;
+        this.previous = current;
+        this.originalOut = System.out;
+        this.originalErr = System.err;
+        this.out = new BufferedOutputStream(originalOut, BUFFER_SIZE);
+        this.writer = new Thread(this::drain, "sfv-output");
+        this.writer.setDaemon(true);
+    }
+
+    // 명령 시작할 때. close 할 때까지 System.out 이 이 sink 로 간다 (안에서 또 열면 닫을 때 바깥 sink 로 돌아감)
+    public static OutputSink open(Mode mode) {
+        OutputSink sink = new OutputSink(mode);
+        sink.writer.start();
+        System.setOut(new PrintStream(new QueueOutputStream(sink, false), true));
+        System.setErr(new PrintStream(new QueueOutputStream(sink, true), true));
+        current = sink;
+        return sink;
+    }
+
+    /**
+     * 파일 하나에 대한 출력. 여러 스레드에서 동시에 불러도 된다.
+     * @param kind 요약/진행 표시에 쓰는 종류 (restoring, deleting, modified ...)
+     */
+    public static void item(String kind, String line) {
+        OutputSink sink = current;
+        if (sink == null) {
+            System.out.println(line);
+            return;
+        }
+        sink.counts.computeIfAbsent(kind, key -> new LongAdder()).increment();
+        if (sink.mode == Mode.VERBOSE) {
+            sink.enqueue((line + System.lineSeparator()).getBytes(Charset.defaultCharset()));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current == this) {
+            current = previous;
+        }
+        System.out.flush();
+        System.err.flush();
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+
+        // 1. 쓰기 스레드가 남은 것을 다 쓰고 끝날 때까지 대기
+        queue.add(STOP);
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 2. 모드별 마무리
+        if (mode == Mode.PROGRESS && progressShown) {
+            originalErr.println("\r" + progressLine());
+        } else if (mode == Mode.SUMMARY) {
+            for (Map.Entry<String, Long> entry : sortedCounts().entrySet()) {
+                out.write(("\t" + entry.getKey() + " : " + entry.getValue() + System.lineSeparator()).getBytes(Charset.defaultCharset()));
+            }
+        }
+        out.flush();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void enqueue(Object chunk) {
+        queue.add(chunk);
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // 쓰기 스레드 : 큐에서 꺼내서 버퍼에 쓰고, 큐가 비면 일이 생기거나 flush / 진행 표시할 때까지 잔다
+    private void drain() {
+        long lastFlush = System.currentTimeMillis();
+        long lastProgress = lastFlush;
+        boolean dirty = false;
+        try {
+            while (true) {
+                Object chunk = queue.poll();
+                long now = System.currentTimeMillis();
+                if (mode == Mode.PROGRESS && now - lastProgress >= PROGRESS_INTERVAL_MS && !counts.isEmpty()) {
+                    originalErr.print("\r" + progressLine());
+                    progressShown = true;
+                    lastProgress = now;
+                }
+                if (chunk == STOP) {
+                    break;
+                }
+                if (chunk == null) {
+                    if (dirty && now - lastFlush >= FLUSH_INTERVAL_MS) {
+                        out.flush();
+                        dirty = false;
+                        lastFlush = now;
+                    }
+                    // idle 을 켠 다음 큐를 한 번 더 봐야, 그 사이에 넣고 안 깨운 것을 놓치지 않는다
+                    idle = true;
+                    if (queue.isEmpty()) {
+                        if (dirty) {
+                            LockSupport.parkNanos((FLUSH_INTERVAL_MS - (now - lastFlush)) * 1_000_000);
+                        } else if (mode == Mode.PROGRESS) {
+                            LockSupport.parkNanos(PROGRESS_INTERVAL_MS * 1_000_000);
+                        } else {
+                            LockSupport.park();
+                        }
+                    }
+                    idle = false;
+                    continue;
+                }
+                if (chunk instanceof ErrorChunk error) {
+                    out.flush(); // 앞의 표준출력이 먼저 나가도록
+                    dirty = false;
+                    originalErr.write(error.bytes());
+                    originalErr.flush();
+                    continue;
+                }
+                out.write((byte[]) chunk);
+                dirty = true;
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private String progressLine() {
+        StringBuilder line = new StringBuilder();
+        for (Map.Entry<String, Long> entry : sortedCounts().entrySet()) {
+            if (!line.isEmpty()) {
+                line.append(", ");
+            }
+            line.append(entry.getKey()).append(' ').append(entry.getValue());
+        }
+        return line.toString();
+    }
+
+    private Map<String, Long> sortedCounts() {
+        Map<String, Long> sorted = new TreeMap<>();
+        counts.forEach((kind, count) -> sorted.put(kind, count.sum()));
+        return sorted;
+    }
+
+    // System.out / System.err 로 쓰인 바이트를 순서대로 큐에 넣는다 (PrintStream 이 호출을 직렬화해줌)
+    private static class QueueOutputStream extends OutputStream {
+        private final OutputSink sink;
+        private final boolean error;
+
+        QueueOutputStream(OutputSink sink, boolean error) {
+            this.sink = sink;
+            this.error = error;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (len > 0) {
+                byte[] bytes = Arrays.copyOfRange(b, off, off + len);
+                sink.enqueue(error ? new ErrorChunk(bytes) : bytes);
+            }
+        }
+    }
+}
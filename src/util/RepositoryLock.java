@@ -0,0 +1,225 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+public class RepositoryLock implements Closeable {
+
+    /**
+     * .sfv/lock 파일에 거는 프로세스 간 잠금 (FileChannel.lock). 파일의 두 바이트를 따로 잠근다.
+     *
+     * 0 번 바이트 (writer) : 리포지토리를 바꾸는 명령끼리 한 번에 하나만. (commit, checkout, pull, gc ...)
+     * 1 번 바이트 (data)   : 읽는 명령은 shared, HEAD / 작업 디렉토리를 바꾸는 순간에는 exclusive.
+     *
+     * commit 은 writer 만 잡고 해시 / 오브젝트 저장을 한다. 새 오브젝트, 커밋 파일은 HEAD 가 가리키기 전까지
+     * 아무도 보지 않으므로 그동안 status, log, archive 는 그대로 돌 수 있다.
+     * 마지막에 커밋 파일, 색인, HEAD 를 쓰는 동안만 publish() 로 data 를 exclusive 로 잡는다.
+     *
+     * 같은 프로세스 안에서 다시 잡으면 (pull -> checkout, 데몬) 개수만 센다.
+     * 기다리는 시간은 core.lockTimeout (ms, 기본 DEFAULT_TIMEOUT_MS). 넘으면 FileSystemException.
+     */
+
+    public static final long DEFAULT_TIMEOUT_MS = 10_000;
+    private static final long WRITER_POSITION = 0;
+    private static final long DATA_POSITION = 1;
+    private static final long RETRY_MS = 20;
+
+    private enum Mode {
+        NONE, SHARED, EXCLUSIVE
+    }
+
+    // 이 프로세스가 열어둔 잠금 파일들 (경로 -> 상태)
+    private static final Map<Path, LockFile> lockFiles = new HashMap<>();
+
+    private final LockFile lockFile;
+    private final boolean writer;
+    private final Mode data;
+    private boolean closed = false;
+
+    private RepositoryLock(LockFile lockFile, boolean writer, Mode data) {
+        this.lockFile = lockFile;
+        this.writer = writer;
+        this.data = data;
+    }
+
+    // status, log, archive 처럼 읽기만 하는 명령
+    public static RepositoryLock shared() throws IOException {
+        return acquire(FileUtil.getLockPath(), false, Mode.SHARED, timeout());
+    }
+
+    // checkout 처럼 처음부터 끝까지 HEAD / 작업 디렉토리를 바꾸는 명령
+    public static RepositoryLock exclusive() throws IOException {
+        return acquire(FileUtil.getLockPath(), true, Mode.EXCLUSIVE, timeout());
+    }
+
+    // commit 처럼 오래 걸리는 준비는 읽는 명령과 같이 하고, 반영할 때만 publish() 하는 명령
+    public static RepositoryLock writer() throws IOException {
+        return acquire(FileUtil.getLockPath(), true, Mode.NONE, timeout());
+    }
+
+    // 다른 리포지토리 (push / pull 상대) 의 잠금
+    public static RepositoryLock shared(Path lockPath) throws IOException {
+        return acquire(lockPath, false, Mode.SHARED, timeout());
+    }
+
+    public static RepositoryLock writer(Path lockPath) throws IOException {
+        return acquire(lockPath, true, Mode.NONE, timeout());
+    }
+
+    // writer 를 잡은 상태에서 HEAD 를 바꾸는 동안. 닫으면 다시 writer 만 남는다
+    public RepositoryLock publish() throws IOException {
+        if (!writer || closed) {
+            throw new IllegalStateException("publish requires an open writer lock");
+        }
+        return acquire(lockFile.path, false, Mode.EXCLUSIVE, timeout());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        release(lockFile, writer, data != Mode.NONE);
+    }
+
+    private static void release(LockFile lockFile, boolean writer, boolean data) throws IOException {
+        synchronized (lockFiles) {
+            if (data) {
+                lockFile.releaseData();
+            }
+            if (writer) {
+                lockFile.releaseWriter();
+            }
+            closeIfUnused(lockFile);
+        }
+    }
+
+    // lockFiles 의 monitor 안에서만 부른다
+    private static void closeIfUnused(LockFile lockFile) throws IOException {
+        if (lockFile.isUnused()) {
+            lockFile.channel.close();
+            lockFiles.remove(lockFile.path);
+        }
+    }
+
+    private static long timeout() throws IOException {
+        return SfvConfig.load().getInt(SfvConfig.CORE_LOCK_TIMEOUT, (int) DEFAULT_TIMEOUT_MS);
+    }
+
+    private static RepositoryLock acquire(Path lockPath, boolean writer, Mode data, long timeoutMillis) throws IOException {
+        Path key = lockPath.toAbsolutePath().normalize();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        LockFile lockFile = null;
+        if (writer) {
+            lockFile = poll(key, WRITER_POSITION, false, deadline, timeoutMillis);
+        }
+        if (data != Mode.NONE) {
+            try {
+                lockFile = poll(key, DATA_POSITION, data == Mode.SHARED, deadline, timeoutMillis);
+            } catch (IOException | RuntimeException e) {
+                if (writer) {
+                    release(lockFile, true, false);
+                }
+                throw e;
+            }
+        }
+        return new RepositoryLock(lockFile, writer, data);
+    }
+
+    /**
+     * 한 바이트를 잡을 때까지 tryLock 을 반복한다 (FileChannel.lock 은 시간 제한이 없으므로).
+     * lockFiles 의 monitor 는 시도 한 번과 개수를 고치는 동안만 잡고, 기다리는 동안은 놓는다.
+     * (다른 프로세스를 기다리는 스레드 하나 때문에 다른 잠금 파일, close() 까지 막히지 않도록)
+     */
+    private static LockFile poll(Path key, long position, boolean shared, long deadline, long timeoutMillis) throws IOException {
+        while (true) {
+            synchronized (lockFiles) {
+                LockFile lockFile = lockFiles.get(key);
+                if (lockFile == null) {
+                    lockFile = new LockFile(key, FileChannel.open(key, StandardOpenOption.CREATE,
+                            StandardOpenOption.READ, StandardOpenOption.WRITE));
+                    lockFiles.put(key, lockFile);
+                }
+                try {
+                    if (lockFile.tryAcquire(position, shared)) {
+                        return lockFile;
+                    }
+                } finally {
+                    closeIfUnused(lockFile);
+                }
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new FileSystemException("Repository is locked by another sfv process (waited "
+                        + timeoutMillis + " ms): " + key);
+            }
+            try {
+                Thread.sleep(RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for " + key);
+            }
+        }
+    }
+
+    // 잠금 파일 하나에 대해 이 프로세스가 잡고 있는 것
+    private static class LockFile {
+        private final Path path;
+        private final FileChannel channel;
+        private FileLock writerLock;
+        private int writerCount = 0;
+        private FileLock dataLock;
+        private int dataCount = 0;
+
+        LockFile(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        // 이미 이 프로세스가 잡고 있으면 개수만 센다. 아니면 한 번만 시도해서 못 잡으면 false
+        boolean tryAcquire(long position, boolean shared) throws IOException {
+            if (position == WRITER_POSITION) {
+                if (writerCount == 0 && (writerLock = channel.tryLock(position, 1, false)) == null) {
+                    return false;
+                }
+                writerCount++;
+                return true;
+            }
+            if (dataCount == 0) {
+                if ((dataLock = channel.tryLock(position, 1, shared)) == null) {
+                    return false;
+                }
+            } else if (dataLock.isShared() && !shared) {
+                throw new IllegalStateException("cannot upgrade a shared repository lock to exclusive");
+            }
+            dataCount++;
+            return true;
+        }
+
+        void releaseWriter() throws IOException {
+            if (--writerCount == 0) {
+                writerLock.release();
+                writerLock = null;
+            }
+        }
+
+        void releaseData() throws IOException {
+            if (--dataCount == 0) {
+                dataLock.release();
+                dataLock = null;
+            }
+        }
+
+        boolean isUnused() {
+            return writerCount == 0 && dataCount == 0;
+        }
+    }
+}
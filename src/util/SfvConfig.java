@@ -0,0 +1,121 @@
+package util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.TreeMap;
+
+public class SfvConfig {
+
+    /**
+     * .sfv/config 에 저장되는 리포지토리 설정. (key=value 형식)
+     * 예시)
+     *   core.durable=true       커밋 시 오브젝트/커밋/HEAD 를 fsync 해서 크래시에도 남도록 함
+     *   core.lockTimeout=10000  다른 sfv 프로세스가 리포지토리를 잠그고 있을 때 기다리는 시간 (ms)
+     *   commit.streaming=true   파일 목록을 메모리에 모으지 않고 흘려보내면서 커밋 (파일이 아주 많을 때)
+     *   commit.sortBuffer=65536 streaming, v5 커밋에서 디스크로 내보내기 전까지 메모리에 들고 있는 항목 수
+     *   status.strategy=v2      변경 감지 방식 (ModifyDetector), status.threads
+     *   commit.strategy=v5      해시/저장 방식 (CommitService, v5 는 CommitPipeline), commit.threads
+     *   checkout.strategy=v4    복원 방식 (CheckoutService), checkout.threads, checkout.chunkSize
+     *   위의 방식/스레드 설정은 보통 sfv tune 이 측정해서 써 넣는다 (Tuning 참고)
+     */
+
+    public static final String CORE_DURABLE = "core.durable";
+    public static final String CORE_LOCK_TIMEOUT = "core.lockTimeout";
+    public static final String COMMIT_STREAMING = "commit.streaming";
+    public static final String COMMIT_SORT_BUFFER = "commit.sortBuffer";
+    public static final String STATUS = "status";
+    public static final String COMMIT = "commit";
+    public static final String CHECKOUT = "checkout";
+
+    private final Properties properties;
+
+    private SfvConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static SfvConfig load() throws IOException {
+        return load(FileUtil.getConfigPath());
+    }
+
+    // 다른 리포지토리의 설정 (push 대상 등)
+    public static SfvConfig load(Path configPath) throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(configPath)) {
+            try (Reader reader = Files.newBufferedReader(configPath, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return new SfvConfig(properties);
+    }
+
+    public String get(String key) {
+        return properties.getProperty(key);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public void set(String key, String value) {
+        if (value == null) {
+            properties.remove(key);
+        } else {
+            properties.setProperty(key, value);
+        }
+    }
+
+    // 키 순서대로 정렬된 사본
+    public TreeMap<String, String> entries() {
+        TreeMap<String, String> entries = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            entries.put(key, properties.getProperty(key));
+        }
+        return entries;
+    }
+
+    // 키 순서대로, Properties.load 가 그대로 읽을 수 있게 이스케이프해서 UTF-8 로 쓴다 (Properties.store 는 날짜 주석과 순서가 매번 바뀜)
+    public void save() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (var entry : entries().entrySet()) {
+            escape(entry.getKey(), true, content);
+            content.append('=');
+            escape(entry.getValue(), false, content);
+            content.append('\n');
+        }
+        FileUtil.writeAtomically(FileUtil.getConfigPath(), content.toString().getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    // Properties.store 와 같은 규칙. 값의 공백은 맨 앞의 것만 (load 가 앞쪽 공백을 버리므로)
+    private static void escape(String text, boolean key, StringBuilder out) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\f' -> out.append("\\f");
+                case '=', ':', '#', '!' -> out.append('\\').append(c);
+                case ' ' -> out.append(key || i == 0 ? "\\ " : " ");
+                default -> out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class StreamingIO {
+
+    /**
+     * 파일 내용을 한 번에 byte[] 로 올리지 않고 흘려보내면서 해시/복사한다.
+     * - 보통 파일 : FileChannel 로 풀에서 빌린 direct 버퍼 (BUFFER_SIZE) 만큼씩 읽음
+     * - 큰 파일 (MMAP_THRESHOLD 이상) : MAP_WINDOW 크기 구간씩 메모리 매핑해서 읽음
+     * 파일 크기와 상관없이 파일당 할당량이 일정하고, 2GB 가 넘는 파일도 다룰 수 있다.
+     */
+
+    static final int BUFFER_SIZE = 256 * 1024;
+    static final long MMAP_THRESHOLD = 64L * 1024 * 1024;
+    static final long MAP_WINDOW = 256L * 1024 * 1024;
+
+    private static final BufferPool bufferPool = new BufferPool(BUFFER_SIZE, Runtime.getRuntime().availableProcessors() * 4);
+
+    // MessageDigest 는 스레드 안전하지 않으므로 스레드마다 하나씩 재사용
+    private static final ThreadLocal<MessageDigest> sha1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // 파일 내용의 SHA-1 (hex)
+    public static String hash(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            return transfer(in, null);
+        }
+    }
+
+    // 이미 메모리로 읽은 내용의 SHA-1 (hex). 작은 파일을 읽기와 쓰기 단계로 나눠 처리할 때
+    public static String hash(byte[] content) {
+        MessageDigest digest = sha1.get();
+        digest.reset();
+        byte[] hash = digest.digest(content);
+        return HashUtil.bytesToHex(hash, 0, hash.length);
+    }
+
+    // source 를 target 으로 복사하면서 해시도 같이 계산한다. (한 번만 읽음) target 은 새로 만든다
+    public static String copyAndHash(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            return transfer(in, out);
+        }
+    }
+
+    private static String transfer(FileChannel in, FileChannel out) throws IOException {
+        MessageDigest digest = sha1.get();
+        digest.reset();
+
+        long size = in.size();
+        if (size >= MMAP_THRESHOLD) {
+            // 1. 큰 파일 : 구간별로 매핑
+            for (long position = 0; position < size; position += MAP_WINDOW) {
+                MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position));
+                digest.update(mapped.duplicate());
+                if (out != null) {
+                    writeFully(out, mapped);
+                }
+            }
+        } else {
+            // 2. 보통 파일 : 풀의 버퍼로 읽기
+            ByteBuffer buffer = bufferPool.acquire();
+            try {
+                while (in.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer.duplicate());
+                    if (out != null) {
+                        writeFully(out, buffer);
+                    }
+                    buffer.clear();
+                }
+            } finally {
+                bufferPool.release(buffer);
+            }
+        }
+        byte[] hash = digest.digest();
+        return HashUtil.bytesToHex(hash, 0, hash.length);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
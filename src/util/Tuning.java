@@ -0,0 +1,34 @@
+package util;
+
+import java.io.IOException;
+
+/**
+ * 작업별 (status, commit, checkout) 방식과 병렬도 설정.
+ * .sfv/config 의 <작업>.strategy, <작업>.threads, <작업>.chunkSize 에서 읽고, 없으면 기본값.
+ * threads, chunkSize 를 안 쓰는 방식 (parallel stream 등) 도 있다.
+ */
+public record Tuning(String strategy, int threads, int chunkSize) {
+
+    public static Tuning load(SfvConfig config, String operation, Tuning defaults) {
+        String strategy = config.get(operation + ".strategy");
+        return new Tuning(strategy == null ? defaults.strategy() : strategy.trim(),
+                config.getInt(operation + ".threads", defaults.threads()),
+                config.getInt(operation + ".chunkSize", defaults.chunkSize()));
+    }
+
+    public static Tuning load(String operation, Tuning defaults) throws IOException {
+        return load(SfvConfig.load(), operation, defaults);
+    }
+
+    // threads, chunkSize 는 0 이면 쓰지 않는 값이므로 설정에서 뺀다
+    public void saveTo(SfvConfig config, String operation) {
+        config.set(operation + ".strategy", strategy);
+        config.set(operation + ".threads", threads > 0 ? String.valueOf(threads) : null);
+        config.set(operation + ".chunkSize", chunkSize > 0 ? String.valueOf(chunkSize) : null);
+    }
+
+    @Override
+    public String toString() {
+        return strategy + (threads > 0 ? " threads=" + threads : "") + (chunkSize > 0 ? " chunk=" + chunkSize : "");
+    }
+}
@@ -0,0 +1,291 @@
+package util;
+
+import commit.CommitSnapshot;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+public class WorkTreeFilter {
+
+    /**
+     * 작업 디렉토리에서 sfv 가 다루는 경로의 범위.
+     * .sfv/sparse 에 패턴이 있으면 (sparse checkout) 패턴에 맞는 경로만 다룬다.
+     * 패턴 예시)
+     *   services/api        : services/api 디렉토리 전체
+     *   services/api/       : 위와 같음
+     *   proto/*.proto       : proto 디렉토리 바로 아래의 .proto 파일
+     * 패턴이 없으면 전체 작업 디렉토리.
+     *
+     * 여기에 명령행에서 받은 경로(scope)를 더 걸 수 있다. (sfv status src/a, sfv commit -m msg src/a)
+     * scope 가 있으면 그 경로 아래만 walk 한다.
+     */
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    private final List<String> patterns;
+    private final List<PathMatcher> matchers = new ArrayList<>();
+    private final List<String> literalPrefixes = new ArrayList<>(); // 패턴에서 glob 문자 앞까지의 디렉토리 부분
+    private final List<String> scopes; // 루트 기준 상대경로. 비어있으면 전체
+
+    private WorkTreeFilter(List<String> patterns) {
+        this(patterns, List.of());
+    }
+
+    private WorkTreeFilter(List<String> patterns, List<String> scopes) {
+        this.patterns = List.copyOf(patterns);
+        this.scopes = List.copyOf(scopes);
+        FileSystem fileSystem = FileSystems.getDefault();
+        for (String pattern : this.patterns) {
+            String glob = pattern.endsWith("/") ? pattern + "**" : pattern;
+            matchers.add(fileSystem.getPathMatcher("glob:" + glob));
+            if (!containsGlob(glob)) {
+                matchers.add(fileSystem.getPathMatcher("glob:" + glob + "/**")); // 디렉토리 이름이면 하위 전체
+            }
+            literalPrefixes.add(literalPrefix(glob));
+        }
+    }
+
+    public static WorkTreeFilter all() {
+        return new WorkTreeFilter(List.of());
+    }
+
+    public static WorkTreeFilter of(List<String> patterns) {
+        return new WorkTreeFilter(patterns);
+    }
+
+    // .sfv/sparse 에서 패턴을 읽는다. 파일이 없으면 전체
+    public static WorkTreeFilter load() throws IOException {
+        Path sparsePath = FileUtil.getSparsePath();
+        if (!Files.exists(sparsePath)) {
+            return all();
+        }
+        List<String> patterns = new ArrayList<>();
+        for (String line : Files.readAllLines(sparsePath)) {
+            String pattern = line.trim();
+            if (!pattern.isEmpty() && !pattern.startsWith("#")) {
+                patterns.add(pattern);
+            }
+        }
+        return new WorkTreeFilter(patterns);
+    }
+
+    /**
+     * 명령행에서 받은 경로로 범위를 더 좁힌 필터를 만든다.
+     * "." 이나 루트를 넘기면 전체. 서로 포함되는 경로는 바깥쪽 하나만 남긴다.
+     */
+    public WorkTreeFilter withScopes(List<String> scopePaths) throws FileSystemException {
+        List<String> normalized = new ArrayList<>();
+        for (String scopePath : scopePaths) {
+            String scope = Paths.get(scopePath).normalize().toString();
+            if (Paths.get(scopePath).isAbsolute() || scope.equals("..") || scope.startsWith("../")) {
+                throw new FileSystemException("path is outside of the repository: " + scopePath);
+            }
+            if (scope.isEmpty()) {
+                return new WorkTreeFilter(patterns); // 루트 전체
+            }
+            normalized.add(scope);
+        }
+
+        List<String> outermost = new ArrayList<>();
+        for (String scope : normalized) {
+            boolean nested = false;
+            for (String other : normalized) {
+                if (!other.equals(scope) && isUnder(scope, other)) {
+                    nested = true;
+                    break;
+                }
+            }
+            if (!nested && !outermost.contains(scope)) {
+                outermost.add(scope);
+            }
+        }
+        return new WorkTreeFilter(patterns, outermost);
+    }
+
+    public void save() throws IOException {
+        if (patterns.isEmpty()) {
+            Files.deleteIfExists(FileUtil.getSparsePath());
+        } else {
+            Files.write(FileUtil.getSparsePath(), patterns);
+        }
+    }
+
+    public boolean isSparse() {
+        return !patterns.isEmpty();
+    }
+
+    // sparse 패턴이나 scope 때문에 작업 디렉토리의 일부만 다루는지
+    public boolean isRestricted() {
+        return !patterns.isEmpty() || !scopes.isEmpty();
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * @param normalizedPath 루트 기준 상대경로 (커밋 메타데이터의 key 와 같은 형식)
+     */
+    public boolean includes(String normalizedPath) {
+        if (!scopes.isEmpty() && !isInScope(normalizedPath)) {
+            return false;
+        }
+        if (patterns.isEmpty()) {
+            return true;
+        }
+        Path path = Paths.get(normalizedPath);
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 이 디렉토리 아래에 패턴에 맞는 파일이 있을 수 있는지. 없으면 디렉토리를 통째로 건너뛴다
+    public boolean mayContain(String normalizedDirectory) {
+        if (normalizedDirectory.isEmpty()) {
+            return true;
+        }
+        if (!scopes.isEmpty()) {
+            boolean related = false;
+            for (String scope : scopes) {
+                if (isUnder(normalizedDirectory, scope) || isUnder(scope, normalizedDirectory)) {
+                    related = true;
+                    break;
+                }
+            }
+            if (!related) {
+                return false;
+            }
+        }
+        if (patterns.isEmpty()) {
+            return true;
+        }
+        String directory = normalizedDirectory + "/";
+        for (String prefix : literalPrefixes) {
+            if (directory.startsWith(prefix) || prefix.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 커밋 메타데이터 중 범위 안의 항목만 남긴다
+    public CommitSnapshot filter(CommitSnapshot snapshot) {
+        if (!isRestricted()) {
+            return snapshot;
+        }
+        return snapshot.filter(this::includes);
+    }
+
+    /**
+     * 작업 디렉토리에서 범위 안의 일반 파일을 모두 찾는다.
+     * .sfv, 숨김 경로("/."), out 경로("/out") 는 제외하고, 범위 밖 디렉토리는 들어가지 않는다.
+     * scope 가 있으면 루트 대신 각 scope 에서부터 walk 한다.
+     */
+    public List<Path> walk() throws IOException {
+        List<Path> files = new ArrayList<>();
+        walk(files::add);
+        return files;
+    }
+
+    public interface FileVisitor {
+        void visit(Path file) throws IOException;
+    }
+
+    // 목록을 만들지 않고 찾는 대로 visitor 에 넘긴다. (파일 수가 아주 많을 때)
+    public void walk(FileVisitor visitor) throws IOException {
+        Path root = FileUtil.getRootPath();
+        if (scopes.isEmpty()) {
+            walk(root, root, visitor);
+        } else {
+            for (String scope : scopes) {
+                Path start = root.resolve(scope);
+                if (Files.exists(start)) {
+                    walk(root, start, visitor);
+                }
+            }
+        }
+    }
+
+    private void walk(Path root, Path start, FileVisitor visitor) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (dir.startsWith(FileUtil.getDotSfvPath()) || isIgnored(root, dir)
+                        || !mayContain(root.relativize(dir).normalize().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (isIgnored(root, file)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                boolean regularFile = attrs.isRegularFile() || (attrs.isSymbolicLink() && Files.isRegularFile(file));
+                if (regularFile && includes(root.relativize(file).normalize().toString())) {
+                    visitor.visit(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Warning: Could not access file: " + file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isInScope(String normalizedPath) {
+        for (String scope : scopes) {
+            if (isUnder(normalizedPath, scope)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // path 가 directory 자신이거나 그 아래에 있는지
+    private static boolean isUnder(String path, String directory) {
+        return path.equals(directory) || path.startsWith(directory + "/");
+    }
+
+    // 루트 기준으로 본다 (루트 자체가 숨김 경로 아래일 수도 있음. sfv tune 의 임시 사본)
+    private static boolean isIgnored(Path root, Path path) {
+        String pathString = "/" + root.relativize(path);
+        return pathString.contains("/.") || pathString.contains("/out");
+    }
+
+    private static boolean containsGlob(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (GLOB_CHARS.indexOf(pattern.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String literalPrefix(String pattern) {
+        int end = pattern.length();
+        for (int i = 0; i < pattern.length(); i++) {
+            if (GLOB_CHARS.indexOf(pattern.charAt(i)) >= 0) {
+                end = i;
+                break;
+            }
+        }
+        if (end == pattern.length()) {
+            return pattern + "/"; // glob 없는 패턴 : 그 경로 자체가 디렉토리일 수 있음
+        }
+        int slash = pattern.lastIndexOf('/', end);
+        return slash < 0 ? "" : pattern.substring(0, slash + 1);
+    }
+}